@@ -0,0 +1,57 @@
+package com.nidorbrotkiv.backend;
+
+import com.google.common.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Keeps a read-through cache from putting back a value that was loaded before a concurrent invalidation. A loader
+ * takes a stamp of the key before reading the database and puts the value only if the key has not been invalidated
+ * since. Generations are kept per stripe of keys, so an invalidation may also skip the put of an unrelated key,
+ * which only costs a later miss.
+ */
+public class CacheGenerations<K, V> {
+    private static final int STRIPES = 1024;
+
+    private final Cache<K, V> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final AtomicLong allGeneration = new AtomicLong();
+
+    public CacheGenerations(Cache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    public long stamp(K key) {
+        // Both generations only grow, so their sum changes whenever either does.
+        return allGeneration.get() + generations.get(stripe(key));
+    }
+
+    /**
+     * Puts the value unless the key was invalidated after the stamp was taken. The check and the put run under the
+     * cache's lock for the key, which invalidations of the key also take.
+     */
+    public void putIfCurrent(K key, V value, long stamp) {
+        cache.asMap().compute(key, (k, current) -> stamp(k) == stamp ? value : current);
+    }
+
+    public void invalidate(K key) {
+        generations.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+    }
+
+    public void invalidateMatching(Predicate<V> predicate) {
+        allGeneration.incrementAndGet();
+        cache.asMap().values().removeIf(predicate);
+    }
+
+    public void invalidateAll() {
+        allGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private static int stripe(Object key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+}
@@ -1,20 +1,27 @@
 package com.nidorbrotkiv.backend;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
 
 @Configuration
+@ConditionalOnProperty(name = "blob-store.type", havingValue = "gcs", matchIfMissing = true)
 public class GoogleCloudConfig {
     @Value("${google.cloud.project-id}")
     private String projectId;
 
+    // Points the client at an emulator such as fake-gcs-server when set to something other than the default.
+    @Value("${google.cloud.storage.host:https://storage.googleapis.com}")
+    private String host;
+
     @Bean
     public Storage storage() {
         return StorageOptions.newBuilder()
                 .setProjectId(getProjectId())
+                .setHost(host)
                 .build()
                 .getService();
     }
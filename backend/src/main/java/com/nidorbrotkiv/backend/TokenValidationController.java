@@ -5,7 +5,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.oauth2.jwt.JwtException;
 
 import java.util.HashMap;
@@ -15,13 +14,17 @@ import java.util.Objects;
 @RestController
 @RequestMapping("/api")
 public class TokenValidationController {
+    private final JwtDecoder jwtDecoder;
+
+    public TokenValidationController(JwtDecoder jwtDecoder) {
+        this.jwtDecoder = jwtDecoder;
+    }
 
     @PostMapping("/validateToken")
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String authHeader) {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                JwtDecoder jwtDecoder = JwtDecoders.fromOidcIssuerLocation("https://accounts.google.com");
                 Jwt jwt = jwtDecoder.decode(token);
 
                 long expiryTimestamp = Objects.requireNonNull(jwt.getExpiresAt()).toEpochMilli();
@@ -0,0 +1,166 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes bucket objects after the database change that orphaned them has committed. Every deletion is first
+ * recorded in the pending_blob_deletion outbox within the caller's transaction, then executed as one batched
+ * request after commit. Rows that fail stay in the outbox and are retried with exponential backoff. Uploading the
+ * same content again cancels its pending deletion, and objects that were written again since are never deleted.
+ */
+@Service
+public class BlobDeletionService {
+    private static final int BATCH_SIZE = 100;
+    // Keeps the retry job away from rows the after-commit flush is still working on.
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofMinutes(5);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(6);
+
+    private final PendingBlobDeletionRepository pendingBlobDeletionRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blob-deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger logger = LoggerFactory.getLogger(BlobDeletionService.class);
+
+    @Autowired
+    public BlobDeletionService(PendingBlobDeletionRepository pendingBlobDeletionRepository,
+                               StoredBlobRepository storedBlobRepository, BlobStore blobStore,
+                               TransactionTemplate transactionTemplate) {
+        this.pendingBlobDeletionRepository = pendingBlobDeletionRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void deleteUrlsAfterCommit(Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        Instant firstRetry = Instant.now().plus(FIRST_RETRY_DELAY);
+        List<PendingBlobDeletion> pending = pendingBlobDeletionRepository.saveAll(urls.stream()
+                .map(url -> toPendingDeletion(url, firstRetry))
+                .toList());
+        List<Long> ids = pending.stream().map(PendingBlobDeletion::getId).toList();
+        logger.info("Queued {} blob deletions", ids.size());
+
+        Runnable flush = () -> executor.execute(() -> process(ids));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    flush.run();
+                }
+            });
+        } else {
+            flush.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bucket.deletion.retry-interval-ms:60000}")
+    public void retryPendingDeletions() {
+        List<PendingBlobDeletion> due = pendingBlobDeletionRepository.findByNextAttemptAtLessThanEqual(Instant.now(),
+                PageRequest.of(0, BATCH_SIZE, Sort.by("nextAttemptAt")));
+        if (!due.isEmpty()) {
+            logger.info("Retrying {} pending blob deletions", due.size());
+            process(due.stream().map(PendingBlobDeletion::getId).toList());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void process(Collection<Long> ids) {
+        Map<String, Claim> claims;
+        try {
+            claims = transactionTemplate.execute(status -> claim(ids));
+        } catch (Exception e) {
+            logger.error("Could not claim {} pending blob deletions, leaving them for the retry job", ids.size(), e);
+            return;
+        }
+        claims.forEach(this::delete);
+    }
+
+    // Runs under the outbox row locks. A re-upload of the same content deletes its outbox row before it writes the
+    // object, so it waits for these locks, and what it writes afterwards gets a generation the delete will not match.
+    private Map<String, Claim> claim(Collection<Long> ids) {
+        Map<String, List<PendingBlobDeletion>> byBucket = pendingBlobDeletionRepository.findByIdInOrderById(ids)
+                .stream()
+                .collect(Collectors.groupingBy(PendingBlobDeletion::getBucketName));
+        Map<String, Claim> claims = new HashMap<>();
+        byBucket.forEach((bucketName, deletions) -> {
+            Map<Boolean, List<PendingBlobDeletion>> referenced = deletions.stream().collect(Collectors.partitioningBy(
+                    deletion -> storedBlobRepository.existsByBucketNameAndName(bucketName, deletion.getBlobName())));
+            if (!referenced.get(true).isEmpty()) {
+                logger.info("Skipping {} blob deletions whose content was uploaded again", referenced.get(true).size());
+                pendingBlobDeletionRepository.deleteAllInBatch(referenced.get(true));
+            }
+            List<PendingBlobDeletion> unreferenced = referenced.get(false);
+            claims.put(bucketName, new Claim(unreferenced, blobStore.findGenerations(bucketName,
+                    unreferenced.stream().map(PendingBlobDeletion::getBlobName).distinct().toList())));
+        });
+        return claims;
+    }
+
+    private void delete(String bucketName, Claim claim) {
+        List<PendingBlobDeletion> done = new ArrayList<>();
+        List<PendingBlobDeletion> failed = new ArrayList<>();
+        try {
+            Set<String> remaining = claim.generations().isEmpty() ? Set.of()
+                    : new HashSet<>(blobStore.deleteImagesFromBucket(bucketName, claim.generations()));
+            claim.deletions().forEach(deletion -> (remaining.contains(deletion.getBlobName()) ? failed : done).add(deletion));
+        } catch (Exception e) {
+            logger.error("Batch deletion of {} blobs from bucket {} failed", claim.deletions().size(), bucketName, e);
+            failed.addAll(claim.deletions());
+        }
+
+        pendingBlobDeletionRepository.deleteAllByIdInBatch(done.stream().map(PendingBlobDeletion::getId).toList());
+        Instant now = Instant.now();
+        failed.forEach(deletion -> pendingBlobDeletionRepository.scheduleRetry(deletion.getId(),
+                deletion.getAttempts() + 1, now.plus(retryDelay(deletion.getAttempts() + 1))));
+        if (!failed.isEmpty()) {
+            logger.warn("{} blob deletions failed and will be retried", failed.size());
+        }
+    }
+
+    private static Duration retryDelay(int attempts) {
+        Duration delay = FIRST_RETRY_DELAY.multipliedBy(1L << Math.min(attempts - 1, 16));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    // Every BlobStore publishes objects as <base URL>/<bucket>/<name>.
+    private static PendingBlobDeletion toPendingDeletion(String url, Instant nextAttemptAt) {
+        int nameStart = url.lastIndexOf('/');
+        int bucketStart = url.lastIndexOf('/', nameStart - 1);
+        if (nameStart <= 0 || bucketStart < 0) {
+            throw new IllegalArgumentException("Not a bucket URL: " + url);
+        }
+        return new PendingBlobDeletion(url.substring(bucketStart + 1, nameStart), url.substring(nameStart + 1),
+                nextAttemptAt);
+    }
+
+    private record Claim(List<PendingBlobDeletion> deletions, Map<String, Long> generations) {
+    }
+}
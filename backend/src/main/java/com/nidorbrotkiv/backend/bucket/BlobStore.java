@@ -0,0 +1,54 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Object storage for uploaded images. The implementation is selected with blob-store.type: "gcs" (default) or
+ * "local".
+ */
+public interface BlobStore {
+    /**
+     * Stores the content under the given name and returns its public URL.
+     */
+    String uploadImageToBucket(String bucketName, InputStream content, String imageName, String contentType);
+
+    InputStream openImage(String bucketName, String imageName);
+
+    /**
+     * Returns the current generation of each given object that exists. An object gets a new generation whenever it
+     * is written again.
+     */
+    Map<String, Long> findGenerations(String bucketName, List<String> imageNames);
+
+    /**
+     * Deletes each object if it still has the given generation and returns the names of those that could not be
+     * deleted. Objects that are already gone or have been written again since count as done.
+     */
+    List<String> deleteImagesFromBucket(String bucketName, Map<String, Long> generations);
+
+    /**
+     * Lists the objects in name order, starting at startOffset (inclusive).
+     */
+    Iterator<BucketObject> listImages(String bucketName, String startOffset, int pageSize);
+
+    String publicUrl(String bucketName, String imageName);
+
+    Optional<BucketObject> findImage(String bucketName, String imageName);
+
+    /**
+     * Reads at most length bytes from the start of the object without downloading the rest.
+     */
+    byte[] readImageHeader(String bucketName, String imageName, int length);
+
+    /**
+     * Authorizes the client to upload one object with the given name and content type, of at most maxBytes,
+     * directly to the store.
+     */
+    DirectUpload createDirectUpload(String bucketName, String imageName, String contentType, long maxBytes,
+                                    Duration validFor);
+}
@@ -0,0 +1,6 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import java.time.Instant;
+
+public record BucketObject(String name, Instant createdAt, long size) {
+}
@@ -0,0 +1,11 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A pre-authorized request the client sends straight to the store: method and URL, plus the headers that were
+ * signed with it and must be sent unchanged.
+ */
+public record DirectUpload(String imageName, String method, String url, Map<String, String> headers, Instant expiresAt) {
+}
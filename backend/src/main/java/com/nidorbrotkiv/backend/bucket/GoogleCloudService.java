@@ -1,49 +1,195 @@
 package com.nidorbrotkiv.backend.bucket;
 
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.HttpMethod;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+import com.google.common.collect.Iterators;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
 @Service
-public class GoogleCloudService {
+@ConditionalOnProperty(name = "blob-store.type", havingValue = "gcs", matchIfMissing = true)
+public class GoogleCloudService implements BlobStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // The writer buffers a whole chunk before sending it, so the chunk size bounds the heap used per upload.
+    private static final int UPLOAD_CHUNK_SIZE = 256 * 1024;
+    private static final int HTTP_PRECONDITION_FAILED = 412;
+    private static final String CONTENT_LENGTH_RANGE_HEADER = "x-goog-content-length-range";
 
     private final Storage storage;
+    private final String host;
     private static final Logger logger = LoggerFactory.getLogger(GoogleCloudService.class);
 
     @Autowired
-    public GoogleCloudService(Storage storage) {
+    public GoogleCloudService(Storage storage,
+                              @Value("${google.cloud.storage.host:https://storage.googleapis.com}") String host) {
         this.storage = storage;
+        this.host = host.endsWith("/") ? host.substring(0, host.length() - 1) : host;
     }
 
-    public String uploadImageToBucket(String bucketName, byte[] content, String imageName) {
-        try {
-            BlobId blobId = BlobId.of(bucketName, imageName);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
-            storage.create(blobInfo, content);
-            String url = String.format("https://storage.googleapis.com/%s/%s", bucketName, imageName);
-            logger.info("Image uploaded successfully to bucket: {}, image: {}", bucketName, imageName);
-            return url;
+    @Override
+    public String uploadImageToBucket(String bucketName, InputStream content, String imageName, String contentType) {
+        BlobId blobId = BlobId.of(bucketName, imageName);
+        BlobInfo blobInfo = BlobInfo.newBuilder(blobId).setContentType(contentType).build();
+        try (ReadableByteChannel source = Channels.newChannel(content);
+             WriteChannel writer = storage.writer(blobInfo)) {
+            writer.setChunkSize(UPLOAD_CHUNK_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    writer.write(buffer);
+                }
+                buffer.clear();
+            }
         } catch (Exception e) {
             logger.error("Error uploading image to bucket: {}, image: {}", bucketName, imageName, e);
             throw new RuntimeException("Failed to upload image", e);
         }
+        String url = publicUrl(bucketName, imageName);
+        logger.info("Image uploaded successfully to bucket: {}, image: {}", bucketName, imageName);
+        return url;
+    }
+
+    @Override
+    public InputStream openImage(String bucketName, String imageName) {
+        return Channels.newInputStream(storage.reader(BlobId.of(bucketName, imageName)));
+    }
+
+    @Override
+    public Iterator<BucketObject> listImages(String bucketName, String startOffset, int pageSize) {
+        List<Storage.BlobListOption> options = new ArrayList<>(List.of(
+                Storage.BlobListOption.pageSize(pageSize),
+                Storage.BlobListOption.fields(Storage.BlobField.NAME, Storage.BlobField.TIME_CREATED,
+                        Storage.BlobField.SIZE)));
+        if (!startOffset.isEmpty()) {
+            options.add(Storage.BlobListOption.startOffset(startOffset));
+        }
+        Iterator<Blob> blobs = storage.list(bucketName, options.toArray(Storage.BlobListOption[]::new))
+                .iterateAll()
+                .iterator();
+        return Iterators.transform(blobs, GoogleCloudService::toBucketObject);
+    }
+
+    @Override
+    public Optional<BucketObject> findImage(String bucketName, String imageName) {
+        return Optional.ofNullable(storage.get(BlobId.of(bucketName, imageName),
+                        Storage.BlobGetOption.fields(Storage.BlobField.NAME, Storage.BlobField.TIME_CREATED,
+                                Storage.BlobField.SIZE)))
+                .map(GoogleCloudService::toBucketObject);
+    }
+
+    @Override
+    public byte[] readImageHeader(String bucketName, String imageName, int length) {
+        try (ReadChannel reader = storage.reader(BlobId.of(bucketName, imageName))) {
+            reader.setChunkSize(length);
+            reader.limit(length);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            int read;
+            do {
+                read = reader.read(buffer);
+            } while (read != -1 && buffer.hasRemaining());
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    public void deleteImageFromBucket(String bucketName, String imageName) {
-        try {
-            boolean deleted = storage.delete(BlobId.of(bucketName, imageName));
-            if (deleted) {
-                logger.info("Image deleted successfully from bucket: {}, image: {}", bucketName, imageName);
-            } else {
-                logger.warn("Image not found in bucket: {}, image: {}", bucketName, imageName);
+    @Override
+    public DirectUpload createDirectUpload(String bucketName, String imageName, String contentType, long maxBytes,
+                                           Duration validFor) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, imageName)).setContentType(contentType).build();
+        // The storage host rejects bodies outside the signed length range, so the size limit holds before finalizing.
+        Map<String, String> headers = Map.of("Content-Type", contentType,
+                CONTENT_LENGTH_RANGE_HEADER, "0," + maxBytes);
+        URL url = storage.signUrl(blobInfo, validFor.toSeconds(), TimeUnit.SECONDS,
+                Storage.SignUrlOption.httpMethod(HttpMethod.PUT),
+                // withContentType() only applies to V2 signatures; V4 signs the header as an extension header.
+                Storage.SignUrlOption.withExtHeaders(headers),
+                Storage.SignUrlOption.withV4Signature(),
+                Storage.SignUrlOption.withHostName(host));
+        // The library always returns https URLs, but an emulator host may only speak http. The scheme is not signed.
+        String signedUrl = host.startsWith("http://") ? url.toString().replaceFirst("^https://", "http://") : url.toString();
+        return new DirectUpload(imageName, HttpMethod.PUT.name(), signedUrl, headers, Instant.now().plus(validFor));
+    }
+
+    private static BucketObject toBucketObject(Blob blob) {
+        OffsetDateTime createTime = blob.getCreateTimeOffsetDateTime();
+        Instant createdAt = createTime == null ? Instant.now() : createTime.toInstant();
+        return new BucketObject(blob.getName(), createdAt, blob.getSize() == null ? 0 : blob.getSize());
+    }
+
+    @Override
+    public String publicUrl(String bucketName, String imageName) {
+        return String.format("%s/%s/%s", host, bucketName, imageName);
+    }
+
+    @Override
+    public Map<String, Long> findGenerations(String bucketName, List<String> imageNames) {
+        if (imageNames.isEmpty()) {
+            return Map.of();
+        }
+        // One batch request instead of a lookup per object.
+        List<Blob> blobs = storage.get(imageNames.stream().map(name -> BlobId.of(bucketName, name)).toList());
+        Map<String, Long> generations = new HashMap<>();
+        for (Blob blob : blobs) {
+            if (blob != null) {
+                generations.put(blob.getName(), blob.getGeneration());
             }
-        } catch (Exception e) {
-            logger.error("Error deleting image from bucket: {}, image: {}", bucketName, imageName, e);
-            throw new RuntimeException("Failed to delete image", e);
         }
+        return generations;
+    }
+
+    @Override
+    public List<String> deleteImagesFromBucket(String bucketName, Map<String, Long> generations) {
+        StorageBatch batch = storage.batch();
+        Map<String, StorageBatchResult<Boolean>> results = new HashMap<>();
+        generations.forEach((name, generation) -> results.put(name, batch.delete(BlobId.of(bucketName, name, generation),
+                Storage.BlobSourceOption.generationMatch())));
+        batch.submit();
+        List<String> remaining = new ArrayList<>();
+        results.forEach((name, result) -> {
+            try {
+                result.get(); // false means the object is already gone
+            } catch (StorageException e) {
+                // A failed precondition means the content was uploaded again, and that copy has to stay.
+                if (e.getCode() != HTTP_PRECONDITION_FAILED) {
+                    logger.warn("Error deleting image from bucket: {}, image: {}: {}", bucketName, name, e.getMessage());
+                    remaining.add(name);
+                }
+            }
+        });
+        logger.info("Deleted {} of {} images from bucket: {}", generations.size() - remaining.size(), generations.size(), bucketName);
+        return remaining;
     }
 }
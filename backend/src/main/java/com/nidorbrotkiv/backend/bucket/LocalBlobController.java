@@ -0,0 +1,224 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Serves objects from the {@link LocalBlobStore} with ETag and single-range support. When the connector supports
+ * sendfile the file is handed to Tomcat, otherwise it is copied with FileChannel.transferTo. Also accepts the
+ * signed direct uploads the store hands out, standing in for the bucket's upload endpoint, including its size limit.
+ */
+@RestController
+@RequestMapping("/blobs")
+@ConditionalOnProperty(name = "blob-store.type", havingValue = "local")
+public class LocalBlobController {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Object names are unique per upload, so their content never changes.
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final LocalBlobStore blobStore;
+
+    public LocalBlobController(LocalBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    @PutMapping("/{bucketName}/{imageName:.+}")
+    public ResponseEntity<Void> uploadImage(@PathVariable String bucketName, @PathVariable String imageName,
+                                            @RequestParam("expires") long expires,
+                                            @RequestParam("max-bytes") long maxBytes,
+                                            @RequestParam("signature") String signature,
+                                            HttpServletRequest request) throws IOException {
+        String contentType = request.getContentType();
+        if (!blobStore.isValidUpload(bucketName, imageName, contentType, maxBytes, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (request.getContentLengthLong() > maxBytes) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        try {
+            blobStore.uploadImageToBucket(bucketName, new SizeLimitedInputStream(request.getInputStream(), maxBytes),
+                    imageName, contentType);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof UploadTooLargeException) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+            }
+            throw e;
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/{bucketName}/{imageName:.+}")
+    public void getImage(@PathVariable String bucketName, @PathVariable String imageName,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file;
+        try {
+            file = blobStore.resolve(bucketName, imageName);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = Files.size(file);
+        String etag = "\"" + Long.toHexString(length) + "-"
+                + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(blobStore.contentType(file));
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long transferred = channel.transferTo(position, count, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                count -= transferred;
+            }
+        }
+    }
+
+    private static boolean matchesEtag(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        return header.trim().equals("*") || Arrays.stream(header.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(etag::equals);
+    }
+
+    // Returns {start, end} (inclusive), an empty array if the range cannot be satisfied, or null if the header
+    // should be ignored. Multi-range requests are answered with the full content, which RFC 9110 allows.
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffixLength = Long.parseLong(last);
+                start = Math.max(0, length - suffixLength);
+                end = length - 1;
+                if (suffixLength <= 0) {
+                    return new long[0];
+                }
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (end < start) {
+                    return null;
+                }
+                end = Math.min(end, length - 1);
+            }
+            return start < length ? new long[]{start, end} : new long[0];
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Chunked bodies announce no length, so the limit is also enforced while the body is copied to disk.
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                consume(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                consume(read);
+            }
+            return read;
+        }
+
+        private void consume(long count) throws UploadTooLargeException {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new UploadTooLargeException();
+            }
+        }
+    }
+
+    private static class UploadTooLargeException extends IOException {
+    }
+}
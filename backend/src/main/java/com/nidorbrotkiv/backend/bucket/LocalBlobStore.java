@@ -0,0 +1,309 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores objects as files under root/bucket/name, for self-hosted deployments and offline benchmarks. Objects are
+ * served by {@link LocalBlobController}.
+ */
+@Service
+@ConditionalOnProperty(name = "blob-store.type", havingValue = "local")
+public class LocalBlobStore implements BlobStore {
+    private static final String CONTENT_TYPE_ATTRIBUTE = "content-type";
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private final Path root;
+    private final String baseUrl;
+    private final HashFunction uploadSigner;
+    private static final Logger logger = LoggerFactory.getLogger(LocalBlobStore.class);
+
+    public LocalBlobStore(@Value("${blob-store.local.root:${java.io.tmpdir}/geo-diary-blobs}") String root,
+                          @Value("${blob-store.local.base-url:http://localhost:8080/blobs}") String baseUrl,
+                          @Value("${blob-store.local.signing-key:}") String signingKey) throws IOException {
+        this.root = Files.createDirectories(Path.of(root)).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        // Without a configured key, upload URLs are only valid until the next restart.
+        byte[] key = signingKey.isEmpty() ? SecureRandom.getSeed(32) : signingKey.getBytes(StandardCharsets.UTF_8);
+        this.uploadSigner = Hashing.hmacSha256(key);
+        logger.info("Storing images in {}", this.root);
+    }
+
+    @Override
+    public String uploadImageToBucket(String bucketName, InputStream content, String imageName, String contentType) {
+        Path target = resolve(bucketName, imageName);
+        Path temp = target.resolveSibling("." + UUID.randomUUID() + ".part");
+        try {
+            Files.createDirectories(target.getParent());
+            try (ReadableByteChannel source = Channels.newChannel(content);
+                 FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long transferred;
+                while ((transferred = file.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                    position += transferred;
+                }
+            }
+            storeContentType(temp, contentType);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Error storing image: {}/{}", bucketName, imageName, e);
+            deleteQuietly(temp);
+            throw new RuntimeException("Failed to upload image", e);
+        }
+        logger.info("Image stored successfully: {}/{}", bucketName, imageName);
+        return publicUrl(bucketName, imageName);
+    }
+
+    @Override
+    public InputStream openImage(String bucketName, String imageName) {
+        try {
+            return Files.newInputStream(resolve(bucketName, imageName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> findGenerations(String bucketName, List<String> imageNames) {
+        Map<String, Long> generations = new HashMap<>();
+        for (String imageName : imageNames) {
+            Path file = resolve(bucketName, imageName);
+            if (Files.exists(file)) {
+                generations.put(imageName, generation(file));
+            }
+        }
+        return generations;
+    }
+
+    // Uploads replace the file with a freshly written one, so its modification time serves as the generation. The
+    // check and the delete are not atomic, which is good enough for a single self-hosted instance.
+    @Override
+    public List<String> deleteImagesFromBucket(String bucketName, Map<String, Long> generations) {
+        List<String> remaining = new ArrayList<>();
+        generations.forEach((imageName, generation) -> {
+            Path file = resolve(bucketName, imageName);
+            try {
+                if (Files.exists(file) && generation(file) == generation) {
+                    Files.delete(file);
+                }
+            } catch (NoSuchFileException e) {
+                // already gone
+            } catch (IOException e) {
+                logger.error("Error deleting image: {}/{}", bucketName, imageName, e);
+                remaining.add(imageName);
+            }
+        });
+        return remaining;
+    }
+
+    // Directory listings are unordered, so every page rescans the directory and keeps only the pageSize smallest
+    // names after the previous page. Memory stays bounded by the page size at the cost of one scan per page.
+    @Override
+    public Iterator<BucketObject> listImages(String bucketName, String startOffset, int pageSize) {
+        Path bucket = resolveBucket(bucketName);
+        if (!Files.isDirectory(bucket)) {
+            return Collections.emptyIterator();
+        }
+        return new AbstractIterator<>() {
+            private Iterator<String> page = Collections.emptyIterator();
+            private String after = startOffset;
+            private boolean inclusive = true;
+            private boolean exhausted;
+
+            @Override
+            protected BucketObject computeNext() {
+                while (!page.hasNext()) {
+                    if (exhausted) {
+                        return endOfData();
+                    }
+                    NavigableSet<String> names = smallestNames(bucket, after, inclusive, pageSize);
+                    exhausted = names.size() < pageSize;
+                    if (names.isEmpty()) {
+                        return endOfData();
+                    }
+                    after = names.last();
+                    inclusive = false;
+                    page = names.iterator();
+                }
+                Path file = bucket.resolve(page.next());
+                return new BucketObject(file.getFileName().toString(), lastModified(file), size(file));
+            }
+        };
+    }
+
+    @Override
+    public String publicUrl(String bucketName, String imageName) {
+        return baseUrl + "/" + bucketName + "/" + imageName;
+    }
+
+    @Override
+    public Optional<BucketObject> findImage(String bucketName, String imageName) {
+        Path file = resolve(bucketName, imageName);
+        try {
+            return Optional.of(new BucketObject(imageName, lastModified(file), Files.size(file)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] readImageHeader(String bucketName, String imageName, int length) {
+        try (InputStream input = Files.newInputStream(resolve(bucketName, imageName))) {
+            return input.readNBytes(length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public DirectUpload createDirectUpload(String bucketName, String imageName, String contentType, long maxBytes,
+                                           Duration validFor) {
+        resolve(bucketName, imageName);
+        Instant expiresAt = Instant.now().plus(validFor);
+        long expires = expiresAt.getEpochSecond();
+        String url = publicUrl(bucketName, imageName) + "?expires=" + expires + "&max-bytes=" + maxBytes
+                + "&signature=" + sign(bucketName, imageName, contentType, maxBytes, expires);
+        return new DirectUpload(imageName, "PUT", url, Map.of("Content-Type", contentType), expiresAt);
+    }
+
+    /**
+     * Checks a direct upload request against the signature issued by {@link #createDirectUpload}.
+     */
+    public boolean isValidUpload(String bucketName, String imageName, String contentType, long maxBytes, long expires,
+                                 String signature) {
+        if (Instant.now().getEpochSecond() > expires || contentType == null || signature == null) {
+            return false;
+        }
+        byte[] expected = sign(bucketName, imageName, contentType, maxBytes, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Resolves an object to its file, rejecting names that would escape the bucket directory.
+     */
+    public Path resolve(String bucketName, String imageName) {
+        Path bucket = resolveBucket(bucketName);
+        Path file = bucket.resolve(imageName).normalize();
+        if (imageName.isEmpty() || imageName.startsWith(".") || !bucket.equals(file.getParent())) {
+            throw new IllegalArgumentException("Invalid image name: " + imageName);
+        }
+        return file;
+    }
+
+    public String contentType(Path file) {
+        try {
+            UserDefinedFileAttributeView attributes = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+            if (attributes != null && attributes.list().contains(CONTENT_TYPE_ATTRIBUTE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(attributes.size(CONTENT_TYPE_ATTRIBUTE));
+                attributes.read(CONTENT_TYPE_ATTRIBUTE, buffer);
+                return new String(buffer.array(), StandardCharsets.UTF_8);
+            }
+            String probed = Files.probeContentType(file);
+            return probed != null ? probed : "application/octet-stream";
+        } catch (IOException | UnsupportedOperationException e) {
+            return "application/octet-stream";
+        }
+    }
+
+    private String sign(String bucketName, String imageName, String contentType, long maxBytes, long expires) {
+        return uploadSigner.hashString(String.join("\n", bucketName, imageName, contentType, Long.toString(maxBytes),
+                Long.toString(expires)), StandardCharsets.UTF_8).toString();
+    }
+
+    private static NavigableSet<String> smallestNames(Path bucket, String after, boolean inclusive, int limit) {
+        NavigableSet<String> names = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int order = name.compareTo(after);
+                if (name.startsWith(".") || order < 0 || order == 0 && !inclusive) {
+                    continue;
+                }
+                names.add(name);
+                if (names.size() > limit) {
+                    names.pollLast();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return names;
+    }
+
+    private Path resolveBucket(String bucketName) {
+        Path bucket = root.resolve(bucketName).normalize();
+        if (bucketName.isEmpty() || !root.equals(bucket.getParent())) {
+            throw new IllegalArgumentException("Invalid bucket name: " + bucketName);
+        }
+        return bucket;
+    }
+
+    // Extended attributes are not available on every filesystem; serving then falls back to probing.
+    private static void storeContentType(Path file, String contentType) {
+        try {
+            UserDefinedFileAttributeView attributes = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+            if (attributes != null) {
+                attributes.write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentType));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Could not store content type for {}", file, e);
+        }
+    }
+
+    private static long generation(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).to(TimeUnit.MICROSECONDS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Instant lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.now();
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary file {}", file, e);
+        }
+    }
+}
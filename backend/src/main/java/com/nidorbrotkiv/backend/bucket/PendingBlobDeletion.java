@@ -0,0 +1,42 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "pending_blob_deletion",
+        indexes = {
+                @Index(name = "idx_pending_blob_deletion_next_attempt_at", columnList = "next_attempt_at"),
+                @Index(name = "idx_pending_blob_deletion_blob", columnList = "bucket_name, blob_name")
+        })
+public class PendingBlobDeletion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String bucketName;
+
+    @Column(nullable = false, length = 1000)
+    private String blobName;
+
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    public PendingBlobDeletion(String bucketName, String blobName, Instant nextAttemptAt) {
+        this.bucketName = bucketName;
+        this.blobName = blobName;
+        this.nextAttemptAt = nextAttemptAt;
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,28 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface PendingBlobDeletionRepository extends JpaRepository<PendingBlobDeletion, Long> {
+    List<PendingBlobDeletion> findByNextAttemptAtLessThanEqual(Instant now, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PendingBlobDeletion> findByIdInOrderById(Collection<Long> ids);
+
+    void deleteByBucketNameAndBlobName(String bucketName, String blobName);
+
+    // An update instead of a save, so a row that was cancelled in the meantime is not inserted again.
+    @Transactional
+    @Modifying
+    @Query("UPDATE PendingBlobDeletion d SET d.attempts = :attempts, d.nextAttemptAt = :nextAttemptAt WHERE d.id = :id")
+    int scheduleRetry(Long id, int attempts, Instant nextAttemptAt);
+}
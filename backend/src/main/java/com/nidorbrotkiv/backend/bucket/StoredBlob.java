@@ -0,0 +1,45 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "stored_blob",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stored_blob_bucket_name", columnNames = {"bucket_name", "name"}))
+public class StoredBlob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String bucketName;
+
+    @Column(nullable = false, length = 64)
+    private String name;
+
+    private String contentType;
+
+    private long referenceCount;
+
+    // False until the content is in the bucket; null for entries created before uploads were tracked.
+    private Boolean uploaded;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Null for entries created before it was tracked.
+    private Instant referencedAt;
+
+    public boolean isUploaded() {
+        return !Boolean.FALSE.equals(uploaded);
+    }
+
+    public Instant lastReferencedAt() {
+        return referencedAt != null ? referencedAt : createdAt;
+    }
+}
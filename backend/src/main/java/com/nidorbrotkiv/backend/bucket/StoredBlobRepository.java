@@ -0,0 +1,34 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<StoredBlob> findByBucketNameAndName(String bucketName, String name);
+
+    boolean existsByBucketNameAndName(String bucketName, String name);
+
+    /**
+     * Creates the entry without references unless it exists, and returns whether it was created. Concurrent
+     * callers wait for each other on the unique constraint instead of failing on it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO stored_blob (bucket_name, name, content_type, reference_count, uploaded, created_at) " +
+            "VALUES (:bucketName, :name, :contentType, 0, :uploaded, :createdAt) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(String bucketName, String name, String contentType, boolean uploaded, Instant createdAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.uploaded = true WHERE b.bucketName = :bucketName AND b.name = :name")
+    int markUploaded(String bucketName, String name);
+}
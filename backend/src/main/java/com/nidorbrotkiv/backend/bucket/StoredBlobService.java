@@ -0,0 +1,113 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Reference counts for content-addressed objects, which are named after the SHA-256 of their content so that
+ * identical uploads share one object. Entries are created with an upsert and counts are changed under a row lock, so
+ * concurrent uploads and deletions of the same content are serialized.
+ */
+@Service
+public class StoredBlobService {
+    private final StoredBlobRepository storedBlobRepository;
+    private final PendingBlobDeletionRepository pendingBlobDeletionRepository;
+    private static final Logger logger = LoggerFactory.getLogger(StoredBlobService.class);
+
+    @Autowired
+    public StoredBlobService(StoredBlobRepository storedBlobRepository,
+                             PendingBlobDeletionRepository pendingBlobDeletionRepository) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.pendingBlobDeletionRepository = pendingBlobDeletionRepository;
+    }
+
+    /**
+     * Adds a reference and returns true if the content is not in the bucket yet, in which case the caller has to
+     * upload it and then call {@link #markUploaded}. Concurrent first uploads of the same content both upload it,
+     * which is harmless since the object is named after its content, so no caller uses the object before it exists.
+     */
+    @Transactional
+    public boolean addReference(String bucketName, String name, String contentType) {
+        StoredBlob blob = lockOrCreate(bucketName, name, contentType, false);
+        blob.setReferenceCount(blob.getReferenceCount() + 1);
+        blob.setReferencedAt(Instant.now());
+        storedBlobRepository.save(blob);
+        if (blob.isUploaded()) {
+            logger.info("Reusing stored blob {} ({} references)", name, blob.getReferenceCount());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a reference to content that is already in the bucket and returns true if it is the first one.
+     */
+    @Transactional
+    public boolean addUploadedReference(String bucketName, String name, String contentType) {
+        StoredBlob blob = lockOrCreate(bucketName, name, contentType, true);
+        blob.setReferenceCount(blob.getReferenceCount() + 1);
+        blob.setReferencedAt(Instant.now());
+        storedBlobRepository.save(blob);
+        return blob.getReferenceCount() == 1;
+    }
+
+    @Transactional
+    public void markUploaded(String bucketName, String name) {
+        storedBlobRepository.markUploaded(bucketName, name);
+    }
+
+    /**
+     * Removes a reference and returns true if none are left, in which case the caller should delete the object.
+     * Objects stored before content addressing have no entry and are treated as having a single reference.
+     */
+    @Transactional
+    public boolean releaseReference(String bucketName, String name) {
+        Optional<StoredBlob> existing = storedBlobRepository.findByBucketNameAndName(bucketName, name);
+        if (existing.isEmpty()) {
+            return true;
+        }
+        StoredBlob blob = existing.get();
+        if (blob.getReferenceCount() <= 1) {
+            storedBlobRepository.delete(blob);
+            return true;
+        }
+        blob.setReferenceCount(blob.getReferenceCount() - 1);
+        storedBlobRepository.save(blob);
+        return false;
+    }
+
+    /**
+     * Removes the entry of an object that no image uses, which an upload leaves behind when it fails between adding
+     * its reference and saving its image. Returns false and keeps the entry if it was referenced after
+     * referencedBefore, since that upload may still be running.
+     */
+    @Transactional
+    public boolean removeUnusedEntry(String bucketName, String name, Instant referencedBefore) {
+        Optional<StoredBlob> existing = storedBlobRepository.findByBucketNameAndName(bucketName, name);
+        if (existing.isEmpty()) {
+            return true;
+        }
+        StoredBlob blob = existing.get();
+        if (blob.lastReferencedAt().isAfter(referencedBefore)) {
+            return false;
+        }
+        logger.warn("Removing leaked stored blob {} with {} references but no image", name, blob.getReferenceCount());
+        storedBlobRepository.delete(blob);
+        return true;
+    }
+
+    private StoredBlob lockOrCreate(String bucketName, String name, String contentType, boolean uploaded) {
+        if (storedBlobRepository.insertIfAbsent(bucketName, name, contentType, uploaded, Instant.now()) > 0) {
+            // The previous copy of this content may still be queued for deletion.
+            pendingBlobDeletionRepository.deleteByBucketNameAndBlobName(bucketName, name);
+        }
+        return storedBlobRepository.findByBucketNameAndName(bucketName, name)
+                .orElseThrow(() -> new IllegalStateException("Stored blob " + name + " disappeared"));
+    }
+}
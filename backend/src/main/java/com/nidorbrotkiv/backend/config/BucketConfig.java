@@ -1,7 +1,6 @@
 package com.nidorbrotkiv.backend.config;
 
 import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,11 +22,10 @@ public class BucketConfig {
     private static final Logger logger = LoggerFactory.getLogger(BucketConfig.class);
 
     @Bean
-    public Bucket bucket() {
+    public Bandwidth bucketBandwidth() {
         Refill refill = Refill.greedy(capacity, Duration.ofMinutes(refillDuration));
         Bandwidth limit = Bandwidth.classic(capacity, refill);
-        Bucket bucket = Bucket.builder().addLimit(limit).build();
-        logger.info("Bucket created with capacity: {} and refill duration: {} minute(s)", capacity, refillDuration);
-        return bucket;
+        logger.info("Per-client buckets use capacity: {} and refill duration: {} minute(s)", capacity, refillDuration);
+        return limit;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.nidorbrotkiv.backend.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the signing keys of the token issuer in memory. Keys are refreshed in the background well before Google
+ * rotates them and saved to a {@link JwkSetStore}, so a restart can verify tokens before the issuer has been
+ * reached. An unknown key id triggers an on-demand refresh, throttled to one per
+ * {@code MIN_ON_DEMAND_REFRESH_INTERVAL_MILLIS}.
+ */
+@Component
+public class CachingJwkSource implements JWKSource<SecurityContext> {
+    private static final long MIN_ON_DEMAND_REFRESH_INTERVAL_MILLIS = 60_000;
+
+    private final JwkSetFetcher fetcher;
+    private final JwkSetStore store;
+    private volatile JWKSet jwkSet = new JWKSet();
+    private volatile long lastRefreshAttempt;
+    private static final Logger logger = LoggerFactory.getLogger(CachingJwkSource.class);
+
+    public CachingJwkSource(JwkSetFetcher fetcher, JwkSetStore store) {
+        this.fetcher = fetcher;
+        this.store = store;
+        loadFromStore();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+        if (keys.isEmpty()) {
+            keys = refreshFor(jwkSelector);
+        }
+        return keys;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${jwt.jwk-set-refresh-interval-ms:1800000}")
+    public void refreshInBackground() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Background JWK set refresh failed, keeping {} cached keys: {}", jwkSet.getKeys().size(), e.getMessage());
+        }
+    }
+
+    // Both checks are made while holding the lock, so callers that arrive during a refresh wait for it and see the
+    // keys it fetched, and a burst of tokens with the same new key id refreshes once.
+    private synchronized List<JWK> refreshFor(JWKSelector jwkSelector) throws KeySourceException {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+        if (!keys.isEmpty() || System.currentTimeMillis() - lastRefreshAttempt <= MIN_ON_DEMAND_REFRESH_INTERVAL_MILLIS) {
+            return keys;
+        }
+        try {
+            refresh();
+        } catch (IOException | ParseException e) {
+            throw new KeySourceException("Could not refresh JWK set", e);
+        }
+        return jwkSelector.select(jwkSet);
+    }
+
+    private synchronized void refresh() throws IOException, ParseException {
+        lastRefreshAttempt = System.currentTimeMillis();
+        String json = fetcher.fetchJwkSet();
+        JWKSet fetched = JWKSet.parse(json);
+        jwkSet = fetched;
+        logger.info("JWK set refreshed with {} keys", fetched.getKeys().size());
+        saveToStore(fetched);
+    }
+
+    private void loadFromStore() {
+        try {
+            Optional<String> json = store.load();
+            if (json.isPresent()) {
+                jwkSet = JWKSet.parse(json.get());
+                logger.info("Loaded {} stored JWK(s)", jwkSet.getKeys().size());
+            }
+        } catch (ParseException | RuntimeException e) {
+            logger.warn("Ignoring unreadable stored JWK set: {}", e.getMessage());
+        }
+    }
+
+    private void saveToStore(JWKSet keys) {
+        try {
+            store.save(keys.toString(true));
+        } catch (RuntimeException e) {
+            logger.warn("Could not store JWK set: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.nidorbrotkiv.backend.config;
+
+import io.github.bucket4j.Bandwidth;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Charges API calls to the bucket of their client address. It runs before {@link JwtAuthFilter}, so requests with
+ * invalid tokens are limited before their signature is verified. Calls with an already verified token are left to
+ * {@link UserRateLimitingFilter}: signed-in calls arrive through the frontend server, so all users share its address.
+ */
+@Component
+public class ClientAddressRateLimitingFilter extends RateLimitingFilter {
+    private final JwtAuthFilter jwtAuthFilter;
+
+    public ClientAddressRateLimitingFilter(Bandwidth bandwidth, JwtAuthFilter jwtAuthFilter,
+                                           @Value("${bucket.max-clients:10000}") long maxClients,
+                                           @Value("${bucket.refill.duration:1}") int refillDuration) {
+        super(bandwidth, maxClients, refillDuration);
+        this.jwtAuthFilter = jwtAuthFilter;
+    }
+
+    @Override
+    protected String clientKey(HttpServletRequest request) {
+        if (jwtAuthFilter.hasVerifiedToken(request)) {
+            return null;
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
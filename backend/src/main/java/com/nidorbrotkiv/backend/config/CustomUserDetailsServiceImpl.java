@@ -1,38 +1,69 @@
 package com.nidorbrotkiv.backend.config;
 
+import com.nidorbrotkiv.backend.marker.MarkerCache;
+import com.nidorbrotkiv.backend.marker.MarkerChangeLog;
+import com.nidorbrotkiv.backend.marker.MarkerSearchIndex;
+import com.nidorbrotkiv.backend.user.CachedUser;
 import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserCache;
 import com.nidorbrotkiv.backend.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
+import java.util.Optional;
+
 @Service
 public class CustomUserDetailsServiceImpl implements CustomUserDetailsService {
     private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final MarkerCache markerCache;
+    private final MarkerChangeLog changeLog;
+    private final MarkerSearchIndex searchIndex;
 
     @Autowired
-    public CustomUserDetailsServiceImpl(UserRepository userRepository) {
+    public CustomUserDetailsServiceImpl(UserRepository userRepository, UserCache userCache, MarkerCache markerCache,
+                                        MarkerChangeLog changeLog, MarkerSearchIndex searchIndex) {
         this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.markerCache = markerCache;
+        this.changeLog = changeLog;
+        this.searchIndex = searchIndex;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByEmail(username)
+        return userCache.findByEmail(username)
+                .map(CachedUser::toUserDetails)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
     }
 
     @Override
     public UserDetails loadUserByDetails(String username, String name, String profileImageUrl) throws UsernameNotFoundException {
+        // Runs on every authenticated request, so the database is only touched when the token's details changed.
+        Optional<CachedUser> cached = userCache.findByEmail(username);
+        if (cached.isPresent() && cached.get().hasDetails(name, profileImageUrl)) {
+            return cached.get().toUserDetails();
+        }
         return userRepository.findByEmail(username)
                 .map(user -> updateUserDetails(user, name, profileImageUrl))
                 .orElseGet(() -> createUser(username, name, profileImageUrl));
     }
 
     private User updateUserDetails(User user, String name, String profileImageUrl) {
+        if (Objects.equals(user.getName(), name) && Objects.equals(user.getProfileImageUrl(), profileImageUrl)) {
+            return user;
+        }
         user.setName(name);
         user.setProfileImageUrl(profileImageUrl);
         userRepository.save(user);
+        userCache.invalidate(user.getEmail());
+        markerCache.invalidateOwner(user.getId());
+        changeLog.ownerChanged(user.getId());
+        // Markers are searchable by their owner's name.
+        searchIndex.reindexOwner(user.getId());
         return user;
     }
 
@@ -42,6 +73,7 @@ public class CustomUserDetailsServiceImpl implements CustomUserDetailsService {
         newUser.setName(name);
         newUser.setProfileImageUrl(profileImageUrl);
         userRepository.save(newUser);
+        userCache.invalidate(username);
         return newUser;
     }
 }
@@ -0,0 +1,31 @@
+package com.nidorbrotkiv.backend.config;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Keeps the key set in a single database row. The local disk of an App Engine standard instance does not survive
+ * the instance, the database does.
+ */
+@Component
+public class DatabaseJwkSetStore implements JwkSetStore {
+    private static final long ROW_ID = 1L;
+
+    private final StoredJwkSetRepository repository;
+
+    public DatabaseJwkSetStore(StoredJwkSetRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Optional<String> load() {
+        return repository.findById(ROW_ID).map(StoredJwkSet::getJson);
+    }
+
+    @Override
+    public void save(String jwkSetJson) {
+        repository.save(new StoredJwkSet(ROW_ID, jwkSetJson, Instant.now()));
+    }
+}
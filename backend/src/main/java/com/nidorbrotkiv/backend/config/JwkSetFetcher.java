@@ -0,0 +1,7 @@
+package com.nidorbrotkiv.backend.config;
+
+import java.io.IOException;
+
+public interface JwkSetFetcher {
+    String fetchJwkSet() throws IOException;
+}
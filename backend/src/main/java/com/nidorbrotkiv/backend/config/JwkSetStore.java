@@ -0,0 +1,13 @@
+package com.nidorbrotkiv.backend.config;
+
+import java.util.Optional;
+
+/**
+ * Durable copy of the issuer's key set. It outlives the instance, so a new instance can verify tokens before the
+ * issuer has been reached.
+ */
+public interface JwkSetStore {
+    Optional<String> load();
+
+    void save(String jwkSetJson);
+}
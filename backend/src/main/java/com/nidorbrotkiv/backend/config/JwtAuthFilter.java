@@ -1,5 +1,8 @@
 package com.nidorbrotkiv.backend.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,16 +14,21 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.oauth2.jwt.JwtValidationException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
@@ -28,13 +36,23 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private final CustomUserDetailsService userDetailsService;
     private static final int BEARER_PREFIX_LENGTH = 7;
     private final JwtDecoder jwtDecoder;
+    private final Set<String> allowedEmails;
+    private final Cache<String, VerifiedToken> verifiedTokens;
 
-    @Value("${allowed.emails}")
-    private String allowedEmails;
-
-    public JwtAuthFilter(CustomUserDetailsService userDetailsService) {
+    public JwtAuthFilter(CustomUserDetailsService userDetailsService, JwtDecoder jwtDecoder,
+                         @Value("${allowed.emails}") String allowedEmails,
+                         @Value("${jwt.verified-token-cache.size:10000}") long verifiedTokenCacheSize) {
         this.userDetailsService = userDetailsService;
-        this.jwtDecoder = JwtDecoders.fromOidcIssuerLocation("https://accounts.google.com");
+        this.jwtDecoder = jwtDecoder;
+        this.allowedEmails = Arrays.stream(allowedEmails.split(","))
+                .map(String::trim)
+                .filter(email -> !email.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        // Google ID tokens live for an hour; entries are additionally checked against their own exp on every hit.
+        this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(verifiedTokenCacheSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
     }
 
     @Override
@@ -44,18 +62,15 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(BEARER_PREFIX_LENGTH);
             try {
-                var jwt = jwtDecoder.decode(token);
-                String email = jwt.getClaimAsString("email");
-                List<String> allowedEmailsList = Arrays.asList(allowedEmails.split(","));
-                if (!allowedEmailsList.contains(email)) {
+                VerifiedToken verifiedToken = verify(token);
+                String email = verifiedToken.email();
+                if (email == null || !allowedEmails.contains(email)) {
                     logger.error("Unauthorized email: " + email);
                     response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid: Unauthorized email");
                     return;
                 }
-                String name = jwt.getClaimAsString("name");
-                String profileImageUrl = jwt.getClaimAsString("picture");
 
-                UserDetails userDetails = userDetailsService.loadUserByDetails(email, name, profileImageUrl);
+                UserDetails userDetails = userDetailsService.loadUserByDetails(email, verifiedToken.name(), verifiedToken.profileImageUrl());
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -75,4 +90,49 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns whether the request carries a bearer token that has already been verified and has not expired.
+     */
+    public boolean hasVerifiedToken(HttpServletRequest request) {
+        final String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return false;
+        }
+        VerifiedToken cached = verifiedTokens.getIfPresent(cacheKey(authHeader.substring(BEARER_PREFIX_LENGTH)));
+        return cached != null && !cached.isExpired();
+    }
+
+    private record VerifiedToken(String email, String name, String profileImageUrl, Instant expiresAt) {
+        static VerifiedToken of(Jwt jwt) {
+            return new VerifiedToken(
+                    jwt.getClaimAsString("email"),
+                    jwt.getClaimAsString("name"),
+                    jwt.getClaimAsString("picture"),
+                    Objects.requireNonNull(jwt.getExpiresAt())
+            );
+        }
+
+        boolean isExpired() {
+            return !Instant.now().isBefore(expiresAt);
+        }
+    }
+
+    private VerifiedToken verify(String token) {
+        String key = cacheKey(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return cached;
+            }
+            verifiedTokens.invalidate(key);
+        }
+        VerifiedToken verified = VerifiedToken.of(jwtDecoder.decode(token));
+        verifiedTokens.put(key, verified);
+        return verified;
+    }
+
+    private static String cacheKey(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    }
+}
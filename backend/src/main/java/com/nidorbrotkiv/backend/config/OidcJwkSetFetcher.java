@@ -0,0 +1,54 @@
+package com.nidorbrotkiv.backend.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+
+@Component
+public class OidcJwkSetFetcher implements JwkSetFetcher {
+    private static final String DISCOVERY_PATH = "/.well-known/openid-configuration";
+    private final RestClient restClient = RestClient.create();
+    private final String issuer;
+    private volatile String jwkSetUri;
+    private static final Logger logger = LoggerFactory.getLogger(OidcJwkSetFetcher.class);
+
+    public OidcJwkSetFetcher(@Value("${jwt.issuer:https://accounts.google.com}") String issuer,
+                             @Value("${jwt.jwk-set-uri:}") String jwkSetUri) {
+        this.issuer = issuer;
+        this.jwkSetUri = jwkSetUri.isBlank() ? null : jwkSetUri;
+    }
+
+    @Override
+    public String fetchJwkSet() throws IOException {
+        String uri = resolveJwkSetUri();
+        try {
+            return restClient.get().uri(uri).retrieve().body(String.class);
+        } catch (RestClientException e) {
+            throw new IOException("Failed to fetch JWK set from " + uri, e);
+        }
+    }
+
+    private String resolveJwkSetUri() throws IOException {
+        if (jwkSetUri == null) {
+            String discoveryUri = issuer + DISCOVERY_PATH;
+            JsonNode configuration;
+            try {
+                configuration = restClient.get().uri(discoveryUri).retrieve().body(JsonNode.class);
+            } catch (RestClientException e) {
+                throw new IOException("Failed to fetch OpenID configuration from " + discoveryUri, e);
+            }
+            if (configuration == null || !configuration.hasNonNull("jwks_uri")) {
+                throw new IOException("OpenID configuration at " + discoveryUri + " does not contain a jwks_uri");
+            }
+            jwkSetUri = configuration.get("jwks_uri").asText();
+            logger.info("Discovered JWK set URI {} for issuer {}", jwkSetUri, issuer);
+        }
+        return jwkSetUri;
+    }
+}
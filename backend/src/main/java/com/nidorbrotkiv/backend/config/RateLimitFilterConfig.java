@@ -3,19 +3,24 @@ package com.nidorbrotkiv.backend.config;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.filter.DelegatingFilterProxy;
 
 @Configuration
 public class RateLimitFilterConfig {
-    private static final String BEAN_NAME = "rateLimitingFilter";
 
+    // Both filters run inside the security filter chain, one on each side of JwtAuthFilter. This keeps Spring Boot
+    // from also registering the beans as plain servlet filters.
     @Bean
-    public FilterRegistrationBean<DelegatingFilterProxy> rateLimitingFilterBean() {
-        FilterRegistrationBean<DelegatingFilterProxy> registrationBean = new FilterRegistrationBean<>();
-        DelegatingFilterProxy proxy = new DelegatingFilterProxy(BEAN_NAME);
+    public FilterRegistrationBean<ClientAddressRateLimitingFilter> clientAddressRateLimitingFilterRegistration(
+            ClientAddressRateLimitingFilter filter) {
+        FilterRegistrationBean<ClientAddressRateLimitingFilter> registrationBean = new FilterRegistrationBean<>(filter);
+        registrationBean.setEnabled(false);
+        return registrationBean;
+    }
 
-        registrationBean.setFilter(proxy);
-        registrationBean.addUrlPatterns("/api/*");
+    @Bean
+    public FilterRegistrationBean<UserRateLimitingFilter> userRateLimitingFilterRegistration(UserRateLimitingFilter filter) {
+        FilterRegistrationBean<UserRateLimitingFilter> registrationBean = new FilterRegistrationBean<>(filter);
+        registrationBean.setEnabled(false);
         return registrationBean;
     }
 }
@@ -1,35 +1,102 @@
 package com.nidorbrotkiv.backend.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.ConsumptionProbe;
-import jakarta.servlet.*;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
-@Component
-public class RateLimitingFilter implements Filter {
+/**
+ * Rate limits API calls per client, where subclasses decide what identifies a client. Each client gets its own
+ * bucket, kept in a size-bounded cache that drops buckets idle for a full refill period (by then they would be full
+ * again anyway). Requests cost tokens by how expensive they are to serve.
+ */
+public abstract class RateLimitingFilter extends OncePerRequestFilter {
+    private static final Pattern IMAGE_UPLOAD_PATH = Pattern.compile("^/api/markers/[^/]+/images$");
 
-    private final Bucket bucket;
+    private final Bandwidth bandwidth;
+    private final Cache<String, Bucket> buckets;
 
-    public RateLimitingFilter(Bucket bucket) {
-        this.bucket = bucket;
+    @Value("${bucket.cost.read:1}")
+    private long readCost;
+
+    @Value("${bucket.cost.write:2}")
+    private long writeCost;
+
+    @Value("${bucket.cost.image-upload:10}")
+    private long imageUploadCost;
+
+    protected RateLimitingFilter(Bandwidth bandwidth,
+                              @Value("${bucket.max-clients:10000}") long maxClients,
+                              @Value("${bucket.refill.duration:1}") int refillDuration) {
+        this.bandwidth = bandwidth;
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMinutes(refillDuration))
+                .build();
     }
 
+    /**
+     * Returns the key of the bucket to charge, or null when this filter does not apply to the request.
+     */
+    protected abstract String clientKey(HttpServletRequest request);
+
     @Override
-    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
-            throws IOException, ServletException {
-        HttpServletResponse httpResponse = (HttpServletResponse) response;
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
 
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = clientKey(request);
+        if (key == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ConsumptionProbe probe = bucketFor(key).tryConsumeAndReturnRemaining(costOf(request));
+        response.setHeader("X-RateLimit-Remaining", Long.toString(probe.getRemainingTokens()));
         if (probe.isConsumed()) {
             chain.doFilter(request, response);
         } else {
-            httpResponse.setContentType("application/json");
-            httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            httpResponse.getWriter().write("{\"message\": \"Too many requests\"}");
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill()) + 1);
+            response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+            response.setContentType("application/json");
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.getWriter().write("{\"message\": \"Too many requests\"}");
+        }
+    }
+
+    private Bucket bucketFor(String key) throws ServletException {
+        try {
+            return buckets.get(key, () -> Bucket.builder().addLimit(bandwidth).build());
+        } catch (ExecutionException e) {
+            throw new ServletException("Could not create rate limit bucket", e);
+        }
+    }
+
+    private long costOf(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (HttpMethod.POST.matches(method) && IMAGE_UPLOAD_PATH.matcher(request.getRequestURI()).matches()) {
+            return imageUploadCost;
+        }
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method)) {
+            return readCost;
         }
+        return writeCost;
     }
 }
@@ -1,5 +1,6 @@
 package com.nidorbrotkiv.backend.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,6 +17,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @RequiredArgsConstructor
 public class SecurityConfig {
     private final JwtAuthFilter jwtAuthFilter;
+    private final ClientAddressRateLimitingFilter clientAddressRateLimitingFilter;
+    private final UserRateLimitingFilter userRateLimitingFilter;
     private final AuthenticationProvider authProvider;
 
     @Bean
@@ -23,6 +26,8 @@ public class SecurityConfig {
         httpSecurity
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(authorize -> authorize
+                        // Async dispatches finish a request that was already authorized, such as an event stream.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/**").authenticated()
                         .anyRequest().permitAll()
                 )
@@ -30,7 +35,9 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authenticationProvider(authProvider)
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(clientAddressRateLimitingFilter, JwtAuthFilter.class)
+                .addFilterAfter(userRateLimitingFilter, JwtAuthFilter.class);
 
         return httpSecurity.build();
     }
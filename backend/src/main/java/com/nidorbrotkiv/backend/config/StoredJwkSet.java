@@ -0,0 +1,24 @@
+package com.nidorbrotkiv.backend.config;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stored_jwk_set")
+public class StoredJwkSet {
+    @Id
+    private Long id;
+
+    @Column(nullable = false, length = 65536)
+    private String json;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+}
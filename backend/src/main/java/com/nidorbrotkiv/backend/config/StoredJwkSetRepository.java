@@ -0,0 +1,6 @@
+package com.nidorbrotkiv.backend.config;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StoredJwkSetRepository extends JpaRepository<StoredJwkSet, Long> {
+}
@@ -0,0 +1,32 @@
+package com.nidorbrotkiv.backend.config;
+
+import io.github.bucket4j.Bandwidth;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Additionally charges authenticated calls to the bucket of their user, so one user cannot exceed the limit by
+ * spreading calls over several addresses.
+ */
+@Component
+public class UserRateLimitingFilter extends RateLimitingFilter {
+
+    public UserRateLimitingFilter(Bandwidth bandwidth,
+                                  @Value("${bucket.max-clients:10000}") long maxClients,
+                                  @Value("${bucket.refill.duration:1}") int refillDuration) {
+        super(bandwidth, maxClients, refillDuration);
+    }
+
+    @Override
+    protected String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails userDetails) {
+            return "user:" + userDetails.getUsername();
+        }
+        return null;
+    }
+}
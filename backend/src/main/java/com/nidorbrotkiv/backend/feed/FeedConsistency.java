@@ -0,0 +1,8 @@
+package com.nidorbrotkiv.backend.feed;
+
+public record FeedConsistency(long missing, long extra) {
+
+    public boolean isConsistent() {
+        return missing == 0 && extra == 0;
+    }
+}
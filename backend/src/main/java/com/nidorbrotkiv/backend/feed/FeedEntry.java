@@ -0,0 +1,41 @@
+package com.nidorbrotkiv.backend.feed;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One marker in one user's materialized map feed. Rows are written with native SQL by {@link FeedService}; the
+ * entity only exists so the table and its indexes are part of the schema.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(FeedEntry.Key.class)
+// The primary key (user_id, marker_id) serves the lookups by user; marker_id needs an index of its own.
+@Table(name = "feed_entry", indexes = {
+        @Index(name = "idx_feed_entry_marker", columnList = "marker_id")
+})
+public class FeedEntry {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "marker_id")
+    private Long markerId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Long userId;
+        private Long markerId;
+    }
+}
@@ -0,0 +1,98 @@
+package com.nidorbrotkiv.backend.feed;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+/**
+ * Native feed maintenance statements. In user_followers a row (follower_id, following_id) means that following_id
+ * follows follower_id, see {@code User.followers}.
+ */
+public interface FeedEntryRepository extends JpaRepository<FeedEntry, FeedEntry.Key> {
+    String EXPECTED_ENTRIES = "(SELECT m.user_id, m.id FROM marker m " +
+            "UNION SELECT uf.following_id, m.id FROM marker m " +
+            "JOIN user_followers uf ON uf.follower_id = m.user_id WHERE m.is_public = true)";
+    String ACTUAL_ENTRIES = "SELECT user_id, marker_id FROM feed_entry";
+
+    @Query(value = "SELECT id FROM app_user WHERE id = :userId FOR UPDATE", nativeQuery = true)
+    Long lockFeedOwner(long userId);
+
+    @Query(value = "SELECT id FROM app_user WHERE id = :userId OR id IN " +
+            "(SELECT uf.follower_id FROM user_followers uf WHERE uf.following_id = :userId) " +
+            "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockFeedOwnerAndFollowed(long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "LOCK TABLE feed_entry IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockTable();
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO feed_entry (user_id, marker_id) " +
+            "SELECT m.user_id, m.id FROM marker m WHERE m.id = :markerId " +
+            "UNION ALL SELECT uf.following_id, m.id FROM marker m " +
+            "JOIN user_followers uf ON uf.follower_id = m.user_id WHERE m.id = :markerId AND m.is_public = true " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int fanOutMarker(long markerId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry WHERE marker_id = :markerId AND user_id <> :ownerId", nativeQuery = true)
+    int retractMarkerFromFollowers(long markerId, long ownerId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry WHERE marker_id = :markerId", nativeQuery = true)
+    int deleteByMarkerId(long markerId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO feed_entry (user_id, marker_id) " +
+            "SELECT :followerId, m.id FROM marker m WHERE m.user_id = :followedId AND m.is_public = true " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int pushOwnerMarkers(long followerId, long followedId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry WHERE user_id = :followerId " +
+            "AND marker_id IN (SELECT m.id FROM marker m WHERE m.user_id = :followedId)", nativeQuery = true)
+    int retractOwnerMarkers(long followerId, long followedId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry WHERE user_id = :userId " +
+            "OR marker_id IN (SELECT m.id FROM marker m WHERE m.user_id = :userId)", nativeQuery = true)
+    int deleteByUserOrOwner(long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry", nativeQuery = true)
+    int deleteAllEntries();
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO feed_entry (user_id, marker_id) " + EXPECTED_ENTRIES, nativeQuery = true)
+    int insertExpectedEntries();
+
+    @Query(value = "SELECT COUNT(*) FROM (" + EXPECTED_ENTRIES + " EXCEPT " + ACTUAL_ENTRIES + ") missing", nativeQuery = true)
+    long countMissingEntries();
+
+    @Query(value = "SELECT COUNT(*) FROM (" + ACTUAL_ENTRIES + " EXCEPT " + EXPECTED_ENTRIES + ") extra", nativeQuery = true)
+    long countExtraEntries();
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO feed_entry (user_id, marker_id) " +
+            EXPECTED_ENTRIES + " EXCEPT " + ACTUAL_ENTRIES, nativeQuery = true)
+    int insertMissingEntries();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM feed_entry WHERE (user_id, marker_id) IN (" +
+            ACTUAL_ENTRIES + " EXCEPT " + EXPECTED_ENTRIES + ")", nativeQuery = true)
+    int deleteExtraEntries();
+}
@@ -0,0 +1,45 @@
+package com.nidorbrotkiv.backend.feed;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class FeedMaintenanceJob {
+    private final FeedService feedService;
+    private final boolean rebuildOnStartup;
+    private final boolean repair;
+    private static final Logger logger = LoggerFactory.getLogger(FeedMaintenanceJob.class);
+
+    public FeedMaintenanceJob(FeedService feedService,
+                              @Value("${feed.rebuild-on-startup:false}") boolean rebuildOnStartup,
+                              @Value("${feed.consistency-check.repair:true}") boolean repair) {
+        this.feedService = feedService;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.repair = repair;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (rebuildOnStartup || feedService.needsBackfill()) {
+            feedService.rebuild();
+        }
+    }
+
+    @Scheduled(cron = "${feed.consistency-check.cron:0 0 4 * * *}")
+    public synchronized void checkConsistency() {
+        FeedConsistency consistency = feedService.check();
+        if (consistency.isConsistent()) {
+            logger.info("Feed is consistent");
+            return;
+        }
+        logger.error("Feed is inconsistent: {} missing and {} extra entries", consistency.missing(), consistency.extra());
+        if (repair) {
+            feedService.repair();
+        }
+    }
+}
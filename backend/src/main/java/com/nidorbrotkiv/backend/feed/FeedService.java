@@ -0,0 +1,112 @@
+package com.nidorbrotkiv.backend.feed;
+
+import com.nidorbrotkiv.backend.marker.MarkerChangeLog;
+import com.nidorbrotkiv.backend.marker.MarkerRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the feed_entry table, the materialized set of markers on each user's map: their own markers and the
+ * public markers of the users they follow. Every write runs inside the caller's transaction, so the feed commits or
+ * rolls back together with the change that caused it.
+ * <p>
+ * Writers first lock the app_user row of the marker owner whose markers are fanned out or retracted. Without that,
+ * a marker created while one of the owner's follow requests is being accepted could be missed by both transactions,
+ * since neither sees the other's uncommitted row.
+ */
+@Service
+public class FeedService {
+    private final FeedEntryRepository feedEntryRepository;
+    private final MarkerRepository markerRepository;
+    private final MarkerChangeLog changeLog;
+    private static final Logger logger = LoggerFactory.getLogger(FeedService.class);
+
+    @Autowired
+    public FeedService(FeedEntryRepository feedEntryRepository, MarkerRepository markerRepository,
+                       MarkerChangeLog changeLog) {
+        this.feedEntryRepository = feedEntryRepository;
+        this.markerRepository = markerRepository;
+        this.changeLog = changeLog;
+    }
+
+    @Transactional
+    public void markerAdded(long ownerId, long markerId) {
+        feedEntryRepository.lockFeedOwner(ownerId);
+        feedEntryRepository.fanOutMarker(markerId);
+    }
+
+    @Transactional
+    public void markerRemoved(long ownerId, long markerId) {
+        feedEntryRepository.lockFeedOwner(ownerId);
+        feedEntryRepository.deleteByMarkerId(markerId);
+    }
+
+    @Transactional
+    public void visibilityChanged(long ownerId, long markerId, boolean isPublic) {
+        feedEntryRepository.lockFeedOwner(ownerId);
+        if (isPublic) {
+            feedEntryRepository.fanOutMarker(markerId);
+        } else {
+            feedEntryRepository.retractMarkerFromFollowers(markerId, ownerId);
+        }
+    }
+
+    @Transactional
+    public void followed(long followerId, long followedId) {
+        feedEntryRepository.lockFeedOwner(followedId);
+        feedEntryRepository.pushOwnerMarkers(followerId, followedId);
+    }
+
+    @Transactional
+    public void unfollowed(long followerId, long followedId) {
+        feedEntryRepository.lockFeedOwner(followedId);
+        feedEntryRepository.retractOwnerMarkers(followerId, followedId);
+    }
+
+    /**
+     * Must run before the user's markers and follow rows are removed, since the statements look them up.
+     */
+    @Transactional
+    public void userRemoved(long userId) {
+        feedEntryRepository.lockFeedOwnerAndFollowed(userId);
+        feedEntryRepository.deleteByUserOrOwner(userId);
+    }
+
+    public boolean needsBackfill() {
+        return feedEntryRepository.count() == 0 && markerRepository.count() > 0;
+    }
+
+    @Transactional
+    public int rebuild() {
+        long startedAt = System.nanoTime();
+        feedEntryRepository.lockTable();
+        feedEntryRepository.deleteAllEntries();
+        int inserted = feedEntryRepository.insertExpectedEntries();
+        changeLog.resetAll();
+        logger.info("Feed rebuilt with {} entries in {} ms", inserted, (System.nanoTime() - startedAt) / 1_000_000);
+        return inserted;
+    }
+
+    /**
+     * Compares the feed with what it should contain. Writers keep the table up to date in their own transactions,
+     * so committed data should never differ; any difference points to a write path that bypasses this service.
+     */
+    public FeedConsistency check() {
+        return new FeedConsistency(feedEntryRepository.countMissingEntries(), feedEntryRepository.countExtraEntries());
+    }
+
+    @Transactional
+    public FeedConsistency repair() {
+        feedEntryRepository.lockTable();
+        int inserted = feedEntryRepository.insertMissingEntries();
+        int deleted = feedEntryRepository.deleteExtraEntries();
+        if (inserted > 0 || deleted > 0) {
+            changeLog.resetAll();
+        }
+        logger.warn("Feed repaired: inserted {} missing and deleted {} extra entries", inserted, deleted);
+        return new FeedConsistency(inserted, deleted);
+    }
+}
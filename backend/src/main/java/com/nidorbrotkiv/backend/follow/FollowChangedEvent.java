@@ -0,0 +1,17 @@
+package com.nidorbrotkiv.backend.follow;
+
+public record FollowChangedEvent(ChangeType type, FollowEdge edge) {
+
+    public enum ChangeType {
+        FOLLOWED,
+        UNFOLLOWED
+    }
+
+    public static FollowChangedEvent followed(Long followerId, Long followedId) {
+        return new FollowChangedEvent(ChangeType.FOLLOWED, new FollowEdge(followerId, followedId));
+    }
+
+    public static FollowChangedEvent unfollowed(Long followerId, Long followedId) {
+        return new FollowChangedEvent(ChangeType.UNFOLLOWED, new FollowEdge(followerId, followedId));
+    }
+}
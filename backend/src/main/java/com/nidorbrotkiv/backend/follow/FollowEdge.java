@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.follow;
+
+public record FollowEdge(Long followerId, Long followedId) {
+}
@@ -0,0 +1,153 @@
+package com.nidorbrotkiv.backend.follow;
+
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory copy of the follow relationships. Every user's followed and follower ids are kept as sorted primitive
+ * arrays that are replaced, never modified, so reads need no locking and never touch the database. A rebuild fills a
+ * new map and swaps it in, so readers see either the old graph or the new one and never a partly filled one.
+ */
+@Component
+public class FollowGraph {
+    private static final long[] NONE = new long[0];
+
+    private record Adjacency(long[] following, long[] followers) {
+    }
+
+    private final UserRepository userRepository;
+    private volatile Map<Long, Adjacency> users = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(FollowGraph.class);
+
+    public FollowGraph(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void rebuild() {
+        List<FollowEdge> edges = userRepository.findAllFollowEdges();
+        Map<Long, long[]> following = group(edges, FollowEdge::followerId, FollowEdge::followedId);
+        Map<Long, long[]> followers = group(edges, FollowEdge::followedId, FollowEdge::followerId);
+
+        Map<Long, Adjacency> rebuilt = new ConcurrentHashMap<>();
+        following.forEach((userId, ids) -> rebuilt.put(userId, new Adjacency(ids, followers.getOrDefault(userId, NONE))));
+        followers.forEach((userId, ids) -> rebuilt.putIfAbsent(userId, new Adjacency(NONE, ids)));
+        users = rebuilt;
+        logger.info("Follow graph built with {} edges between {} users", edges.size(), rebuilt.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFollowChanged(FollowChangedEvent event) {
+        FollowEdge edge = event.edge();
+        if (event.type() == FollowChangedEvent.ChangeType.FOLLOWED) {
+            addEdge(edge.followerId(), edge.followedId());
+        } else {
+            removeEdge(edge.followerId(), edge.followedId());
+        }
+    }
+
+    public synchronized void addEdge(long followerId, long followedId) {
+        Adjacency follower = adjacency(followerId);
+        Adjacency followed = adjacency(followedId);
+        update(followerId, insert(follower.following(), followedId), follower.followers());
+        update(followedId, followed.following(), insert(followed.followers(), followerId));
+    }
+
+    public synchronized void removeEdge(long followerId, long followedId) {
+        Adjacency follower = adjacency(followerId);
+        Adjacency followed = adjacency(followedId);
+        update(followerId, delete(follower.following(), followedId), follower.followers());
+        update(followedId, followed.following(), delete(followed.followers(), followerId));
+    }
+
+    public boolean follows(long followerId, long followedId) {
+        return Arrays.binarySearch(adjacency(followerId).following(), followedId) >= 0;
+    }
+
+    public long[] following(long userId) {
+        return adjacency(userId).following().clone();
+    }
+
+    public long[] followers(long userId) {
+        return adjacency(userId).followers().clone();
+    }
+
+    public int followingCount(long userId) {
+        return adjacency(userId).following().length;
+    }
+
+    public int followerCount(long userId) {
+        return adjacency(userId).followers().length;
+    }
+
+    private Adjacency adjacency(long userId) {
+        Adjacency adjacency = users.get(userId);
+        return adjacency != null ? adjacency : new Adjacency(NONE, NONE);
+    }
+
+    private void update(long userId, long[] following, long[] followers) {
+        if (following.length == 0 && followers.length == 0) {
+            users.remove(userId);
+        } else {
+            users.put(userId, new Adjacency(following, followers));
+        }
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int position = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] delete(long[] ids, long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+
+    private static Map<Long, long[]> group(List<FollowEdge> edges, ToLongFunction<FollowEdge> key,
+                                           ToLongFunction<FollowEdge> value) {
+        FollowEdge[] sorted = edges.toArray(new FollowEdge[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(key).thenComparingLong(value));
+        Map<Long, long[]> result = new ConcurrentHashMap<>();
+        int start = 0;
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || key.applyAsLong(sorted[i]) != key.applyAsLong(sorted[start])) {
+                long[] ids = new long[i - start];
+                for (int j = start; j < i; j++) {
+                    ids[j - start] = value.applyAsLong(sorted[j]);
+                }
+                result.put(key.applyAsLong(sorted[start]), ids);
+                start = i;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.nidorbrotkiv.backend.geo;
+
+public record BoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+
+    public BoundingBox {
+        if (minLatitude < -90 || maxLatitude > 90 || minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("Invalid latitude range: " + minLatitude + " to " + maxLatitude);
+        }
+        if (minLongitude < -180 || minLongitude > 180 || maxLongitude < -180 || maxLongitude > 180) {
+            throw new IllegalArgumentException("Invalid longitude range: " + minLongitude + " to " + maxLongitude);
+        }
+    }
+
+    /**
+     * Parses a bounding box on the form {@code minLat,minLon,maxLat,maxLon}. A box whose minimum longitude is
+     * larger than its maximum longitude is treated as crossing the antimeridian.
+     */
+    public static BoundingBox parse(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Bounding box is missing");
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Bounding box must be on the form minLat,minLon,maxLat,maxLon");
+        }
+        try {
+            return new BoundingBox(
+                    Double.parseDouble(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim())
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bounding box contains a non-numeric value: " + value, e);
+        }
+    }
+
+    public boolean crossesAntimeridian() {
+        return minLongitude > maxLongitude;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        if (crossesAntimeridian()) {
+            return longitude >= minLongitude || longitude <= maxLongitude;
+        }
+        return longitude >= minLongitude && longitude <= maxLongitude;
+    }
+}
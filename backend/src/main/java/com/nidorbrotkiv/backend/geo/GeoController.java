@@ -0,0 +1,31 @@
+package com.nidorbrotkiv.backend.geo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/geo")
+public class GeoController {
+    private final ReverseGeocoder reverseGeocoder;
+
+    @Autowired
+    public GeoController(ReverseGeocoder reverseGeocoder) {
+        this.reverseGeocoder = reverseGeocoder;
+    }
+
+    @GetMapping("/reverse")
+    public ResponseEntity<Place> reverseGeocode(@RequestParam("lat") double latitude,
+                                                @RequestParam("lon") double longitude) {
+        if (!reverseGeocoder.isAvailable()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return reverseGeocoder.findNearest(latitude, longitude)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
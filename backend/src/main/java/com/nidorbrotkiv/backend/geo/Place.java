@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.geo;
+
+public record Place(String name, String countryCode) {
+}
@@ -0,0 +1,226 @@
+package com.nidorbrotkiv.backend.geo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Offline nearest-place lookup over a GeoNames dump (cities500.txt or similar, configured with
+ * geocoder.dataset-path). The dump is compiled once into a binary index next to it: places bucketed by a
+ * 0.5 degree grid, stored as fixed-size records followed by a name table. The index is memory-mapped, so it
+ * lives in the page cache rather than on the heap and later startups skip the parsing.
+ */
+@Component
+public class ReverseGeocoder {
+    private static final int MAGIC = 0x47454F31; // "GEO1"
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 16;
+    private static final double CELL_DEGREES = 0.5;
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+    private static final int CELLS = ROWS * COLUMNS;
+    // About 1100 km, beyond which a point is considered to have no nearby place.
+    private static final int MAX_RING = 20;
+
+    private final String datasetPath;
+    private final String indexPath;
+    private volatile ByteBuffer index;
+    private int recordsStart;
+    private int namesStart;
+    private static final Logger logger = LoggerFactory.getLogger(ReverseGeocoder.class);
+
+    public ReverseGeocoder(@Value("${geocoder.dataset-path:}") String datasetPath,
+                           @Value("${geocoder.index-path:}") String indexPath) {
+        this.datasetPath = datasetPath;
+        this.indexPath = indexPath.isBlank() && !datasetPath.isBlank() ? datasetPath + ".idx" : indexPath;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void load() {
+        if (datasetPath.isBlank()) {
+            logger.info("No geocoder.dataset-path set, reverse geocoding is disabled");
+            return;
+        }
+        try {
+            Path dataset = Path.of(datasetPath);
+            Path indexFile = Path.of(indexPath);
+            if (!Files.exists(indexFile)
+                    || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(dataset)) < 0) {
+                buildIndex(dataset, indexFile);
+            }
+            map(indexFile);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not load reverse geocoder from {}", datasetPath, e);
+        }
+    }
+
+    public boolean isAvailable() {
+        return index != null;
+    }
+
+    /**
+     * Returns the place nearest to the coordinates, or empty if the geocoder is not loaded or nothing is nearby.
+     */
+    public Optional<Place> findNearest(double latitude, double longitude) {
+        ByteBuffer buffer = index;
+        if (buffer == null) {
+            return Optional.empty();
+        }
+        int row = row(latitude);
+        int column = column(longitude);
+        double longitudeScale = Math.cos(Math.toRadians(latitude));
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (int ring = 0; ring <= MAX_RING; ring++) {
+            // Anything outside the rings searched so far is at least this far away.
+            double bound = (ring - 1) * CELL_DEGREES * Math.min(1, longitudeScale);
+            if (best >= 0 && bestDistance <= bound * bound) {
+                break;
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                if (r < 0 || r >= ROWS) {
+                    continue;
+                }
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = column - ring; c <= column + ring; c += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                    int cell = r * COLUMNS + Math.floorMod(c, COLUMNS);
+                    int end = buffer.getInt(HEADER_SIZE + (cell + 1) * Integer.BYTES);
+                    for (int i = buffer.getInt(HEADER_SIZE + cell * Integer.BYTES); i < end; i++) {
+                        int offset = recordsStart + i * RECORD_SIZE;
+                        double dLat = buffer.getFloat(offset) - latitude;
+                        double dLon = Math.IEEEremainder(buffer.getFloat(offset + 4) - longitude, 360) * longitudeScale;
+                        double distance = dLat * dLat + dLon * dLon;
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = i;
+                        }
+                    }
+                }
+            }
+        }
+        return best < 0 ? Optional.empty() : Optional.of(readPlace(buffer, best));
+    }
+
+    private Place readPlace(ByteBuffer buffer, int record) {
+        int offset = recordsStart + record * RECORD_SIZE;
+        int nameOffset = buffer.getInt(offset + 8);
+        int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 12));
+        byte[] name = new byte[nameLength];
+        buffer.get(namesStart + nameOffset, name);
+        String countryCode = new String(new byte[]{buffer.get(offset + 14), buffer.get(offset + 15)},
+                StandardCharsets.US_ASCII).trim();
+        return new Place(new String(name, StandardCharsets.UTF_8), countryCode.isEmpty() ? null : countryCode);
+    }
+
+    private void map(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a geocoder index: " + indexFile);
+            }
+            int count = buffer.getInt(4);
+            recordsStart = HEADER_SIZE + (CELLS + 1) * Integer.BYTES;
+            namesStart = recordsStart + count * RECORD_SIZE;
+            index = buffer;
+            logger.info("Reverse geocoder loaded with {} places from {}", count, indexFile);
+        }
+    }
+
+    // GeoNames columns: 1 name, 4 latitude, 5 longitude, 6 feature class, 8 country code.
+    private static void buildIndex(Path dataset, Path indexFile) throws IOException {
+        long startedAt = System.nanoTime();
+        List<IndexedPlace> places = new ArrayList<>();
+        int[] cellCounts = new int[CELLS];
+        try (BufferedReader reader = Files.newBufferedReader(dataset, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t", 10);
+                if (columns.length < 9 || !"P".equals(columns[6])) {
+                    continue;
+                }
+                IndexedPlace place = new IndexedPlace(columns[1], Float.parseFloat(columns[4]),
+                        Float.parseFloat(columns[5]), columns[8]);
+                places.add(place);
+                cellCounts[cellOf(place.latitude(), place.longitude())]++;
+            }
+        }
+
+        int[] cellStarts = new int[CELLS + 1];
+        for (int cell = 0; cell < CELLS; cell++) {
+            cellStarts[cell + 1] = cellStarts[cell] + cellCounts[cell];
+        }
+        int[] next = cellStarts.clone();
+        ByteBuffer records = ByteBuffer.allocate(places.size() * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        for (IndexedPlace place : places) {
+            byte[] name = place.name().getBytes(StandardCharsets.UTF_8);
+            int nameLength = Math.min(name.length, 0xFFFF);
+            byte[] countryCode = (place.countryCode() + "  ").getBytes(StandardCharsets.US_ASCII);
+            int offset = next[cellOf(place.latitude(), place.longitude())]++ * RECORD_SIZE;
+            records.putFloat(offset, place.latitude())
+                    .putFloat(offset + 4, place.longitude())
+                    .putInt(offset + 8, names.size())
+                    .putShort(offset + 12, (short) nameLength)
+                    .put(offset + 14, countryCode[0])
+                    .put(offset + 15, countryCode[1]);
+            names.write(name, 0, nameLength);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + cellStarts.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(places.size()).putInt(names.size());
+        for (int cellStart : cellStarts) {
+            header.putInt(cellStart);
+        }
+        header.flip();
+
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer part : new ByteBuffer[]{header, records, ByteBuffer.wrap(names.toByteArray())}) {
+                while (part.hasRemaining()) {
+                    channel.write(part);
+                }
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Built geocoder index with {} places in {} ms", places.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private static int cellOf(double latitude, double longitude) {
+        return row(latitude) * COLUMNS + column(longitude);
+    }
+
+    private static int row(double latitude) {
+        return Math.min(ROWS - 1, Math.max(0, (int) Math.floor((latitude + 90) / CELL_DEGREES)));
+    }
+
+    private static int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / CELL_DEGREES), COLUMNS);
+    }
+
+    private record IndexedPlace(String name, float latitude, float longitude, String countryCode) {
+    }
+}
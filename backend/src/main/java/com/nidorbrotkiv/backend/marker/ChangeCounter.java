@@ -0,0 +1,30 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The single row that hands out marker change versions. Writers lock it just before committing, so versions
+ * become visible in the order they were handed out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "change_counter")
+public class ChangeCounter {
+    @Id
+    private Long id;
+
+    private Long version;
+
+    // Clients that synced before this version must download the full list again.
+    private Long resetVersion;
+
+    // Tombstones up to this version have been deleted.
+    private Long prunedVersion;
+}
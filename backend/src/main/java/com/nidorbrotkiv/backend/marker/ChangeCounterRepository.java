@@ -0,0 +1,15 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface ChangeCounterRepository extends JpaRepository<ChangeCounter, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ChangeCounter c WHERE c.id = :id")
+    Optional<ChangeCounter> lockById(long id);
+}
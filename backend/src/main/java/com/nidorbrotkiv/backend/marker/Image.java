@@ -4,21 +4,45 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
+@EqualsAndHashCode(exclude = "marker")
+@ToString(exclude = "marker")
 @AllArgsConstructor
 @Entity
-@Table(name = "image")
+@Table(name = "image", indexes = {
+        @Index(name = "idx_image_url", columnList = "url"),
+        @Index(name = "idx_image_thumbnail_url", columnList = "thumbnail_url"),
+        @Index(name = "idx_image_medium_url", columnList = "medium_url")
+})
 public class Image {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String url;
+    private String thumbnailUrl;
+    private String mediumUrl;
 
     @ManyToOne
     @JoinColumn(name = "marker_id", nullable = false)
     @JsonBackReference("marker-image")
     private Marker marker;
+
+    public List<String> storedUrls() {
+        List<String> urls = new ArrayList<>(List.of(url));
+        if (thumbnailUrl != null) {
+            urls.add(thumbnailUrl);
+        }
+        if (mediumUrl != null) {
+            urls.add(mediumUrl);
+        }
+        return urls;
+    }
 }
@@ -1,9 +1,31 @@
 package com.nidorbrotkiv.backend.marker;
 
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ImageRepository extends JpaRepository<Image, Long> {
-    Optional<Image> findByUrl(String url);
+    Optional<Image> findFirstByMarkerIdAndUrl(Long markerId, String url);
+
+    Optional<Image> findFirstByUrlAndMediumUrlIsNotNull(String url);
+
+    @Query("SELECT new com.nidorbrotkiv.backend.marker.ImageRow(i.marker.id, i.id, i.url, i.thumbnailUrl, i.mediumUrl) " +
+            "FROM Image i WHERE i.marker.id IN :markerIds ORDER BY i.id")
+    List<ImageRow> findRowsByMarkerIdIn(Collection<Long> markerIds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Image i SET i.thumbnailUrl = :thumbnailUrl, i.mediumUrl = :mediumUrl WHERE i.url = :url")
+    int updateVariantUrls(String url, String thumbnailUrl, String mediumUrl);
+
+    // The given URLs that an image stores, as original or as variant.
+    @Query(value = "SELECT url FROM image WHERE url IN :urls " +
+            "UNION SELECT thumbnail_url FROM image WHERE thumbnail_url IN :urls " +
+            "UNION SELECT medium_url FROM image WHERE medium_url IN :urls", nativeQuery = true)
+    List<String> findStoredUrlsIn(Collection<String> urls);
 }
@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record ImageRow(Long markerId, Long id, String url, String thumbnailUrl, String mediumUrl) {
+}
@@ -0,0 +1,76 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public enum ImageType {
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp"),
+    HEIC("image/heic");
+
+    public static final int HEADER_LENGTH = 12;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String contentType;
+
+    ImageType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static ImageType fromContentType(String contentType) {
+        for (ImageType type : values()) {
+            if (type.contentType.equalsIgnoreCase(contentType)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported image type: " + contentType);
+    }
+
+    /**
+     * Identifies the image format from the first bytes of the stream and pushes them back, so the stream can still
+     * be consumed from the start.
+     */
+    public static ImageType detect(PushbackInputStream input) throws IOException {
+        byte[] header = input.readNBytes(HEADER_LENGTH);
+        input.unread(header);
+        return detect(header);
+    }
+
+    public static ImageType detect(byte[] header) {
+        if (startsWith(header, 0, (byte) 0xFF, (byte) 0xD8, (byte) 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(header, 0, PNG_SIGNATURE)) {
+            return PNG;
+        }
+        if (startsWith(header, 0, ascii("GIF87a")) || startsWith(header, 0, ascii("GIF89a"))) {
+            return GIF;
+        }
+        if (startsWith(header, 0, ascii("RIFF")) && startsWith(header, 8, ascii("WEBP"))) {
+            return WEBP;
+        }
+        if (startsWith(header, 4, ascii("ftyp"))
+                && (startsWith(header, 8, ascii("heic")) || startsWith(header, 8, ascii("heix"))
+                || startsWith(header, 8, ascii("mif1")) || startsWith(header, 8, ascii("msf1")))) {
+            return HEIC;
+        }
+        throw new IllegalArgumentException("The file is not an image.");
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte... prefix) {
+        return data.length >= offset + prefix.length
+                && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,20 @@
+package com.nidorbrotkiv.backend.marker;
+
+public enum ImageVariant {
+    THUMBNAIL(320),
+    MEDIUM(1024);
+
+    private final int maxDimension;
+
+    ImageVariant(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public String nameFor(String originalName) {
+        return originalName + "_" + name().toLowerCase() + ".jpg";
+    }
+}
@@ -0,0 +1,161 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.bucket.BlobStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Produces downscaled JPEG variants of uploaded images on a small bounded worker pool, off the upload request.
+ * When the queue is full the job is dropped and clients keep using the original, which is always available.
+ */
+@Service
+public class ImageVariantService {
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final BlobStore blobStore;
+    private final ImageRepository imageRepository;
+    private final MarkerChangeLog changeLog;
+    private final ThreadPoolExecutor executor;
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    public ImageVariantService(BlobStore blobStore, ImageRepository imageRepository, MarkerChangeLog changeLog,
+                               @Value("${images.variants.workers:2}") int workers,
+                               @Value("${images.variants.queue-size:100}") int queueSize) {
+        this.blobStore = blobStore;
+        this.imageRepository = imageRepository;
+        this.changeLog = changeLog;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> logger.warn("Image variant queue is full, skipping variants for one image"));
+    }
+
+    public void scheduleVariants(String imageUrl, String bucketName, String imageName) {
+        Runnable submit = () -> executor.execute(() -> createVariants(imageUrl, bucketName, imageName));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit.run();
+                }
+            });
+        } else {
+            submit.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void createVariants(String imageUrl, String bucketName, String imageName) {
+        try {
+            Map<ImageVariant, String> urls = new EnumMap<>(ImageVariant.class);
+            BufferedImage source = read(bucketName, imageName, ImageVariant.MEDIUM.getMaxDimension());
+            if (source == null) {
+                logger.info("No decoder for image {}, serving the original only", imageName);
+                return;
+            }
+            for (ImageVariant variant : ImageVariant.values()) {
+                byte[] jpeg = encodeJpeg(scale(source, variant.getMaxDimension()));
+                urls.put(variant, blobStore.uploadImageToBucket(bucketName, new ByteArrayInputStream(jpeg),
+                        variant.nameFor(imageName), ImageType.JPEG.getContentType()));
+            }
+            // Updates every image sharing this content, including ones attached while the variants were being made.
+            imageRepository.updateVariantUrls(imageUrl, urls.get(ImageVariant.THUMBNAIL), urls.get(ImageVariant.MEDIUM));
+            changeLog.imageChanged(imageUrl);
+            logger.info("Created image variants for image: {}", imageName);
+        } catch (Exception e) {
+            logger.error("Failed to create variants for image: {}", imageName, e);
+        }
+    }
+
+    // Decodes with source subsampling so that large photos are never fully rasterized at their original size.
+    private BufferedImage read(String bucketName, String imageName, int targetDimension) throws IOException {
+        try (InputStream input = blobStore.openImage(bucketName, imageName);
+             ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int largestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, largestSide / (targetDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxDimension) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
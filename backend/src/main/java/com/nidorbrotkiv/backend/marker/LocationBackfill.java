@@ -0,0 +1,84 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.Place;
+import com.nidorbrotkiv.backend.geo.ReverseGeocoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fills in the location of markers saved without one, using the offline geocoder in chunks of rows.
+ */
+@Component
+public class LocationBackfill {
+    static final String UNKNOWN_LOCATION = "Unknown location";
+    private static final int CHUNK_SIZE = 500;
+
+    private final WeatherInfoRepository weatherInfoRepository;
+    private final ReverseGeocoder reverseGeocoder;
+    private final MarkerCache markerCache;
+    private final MarkerChangeLog changeLog;
+    private final MarkerSearchIndex searchIndex;
+    private final boolean runOnStartup;
+    private static final Logger logger = LoggerFactory.getLogger(LocationBackfill.class);
+
+    public LocationBackfill(WeatherInfoRepository weatherInfoRepository, ReverseGeocoder reverseGeocoder,
+                            MarkerCache markerCache, MarkerChangeLog changeLog, MarkerSearchIndex searchIndex,
+                            @Value("${geocoder.backfill-on-startup:false}") boolean runOnStartup) {
+        this.weatherInfoRepository = weatherInfoRepository;
+        this.reverseGeocoder = reverseGeocoder;
+        this.markerCache = markerCache;
+        this.changeLog = changeLog;
+        this.searchIndex = searchIndex;
+        this.runOnStartup = runOnStartup;
+    }
+
+    // Runs after MarkerSearchIndex is built, so the rows it locates are re-indexed rather than read by the build.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onStartup() {
+        if (runOnStartup && reverseGeocoder.isAvailable()) {
+            backfill();
+        }
+    }
+
+    public long backfill() {
+        long startedAt = System.nanoTime();
+        long updated = 0;
+        long afterId = 0;
+        List<UnlocatedWeather> chunk;
+        do {
+            chunk = weatherInfoRepository.findUnlocatedAfter(afterId, PageRequest.ofSize(CHUNK_SIZE));
+            updated += updateChunk(chunk);
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).weatherInfoId();
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+        if (updated > 0) {
+            markerCache.invalidateAll();
+        }
+        logger.info("Backfilled the location of {} markers in {} ms", updated, (System.nanoTime() - startedAt) / 1_000_000);
+        return updated;
+    }
+
+    private int updateChunk(List<UnlocatedWeather> chunk) {
+        int updated = 0;
+        for (UnlocatedWeather row : chunk) {
+            Place place = reverseGeocoder.findNearest(row.latitude(), row.longitude()).orElse(null);
+            updated += weatherInfoRepository.updateLocation(row.weatherInfoId(),
+                    place != null ? place.name() : UNKNOWN_LOCATION,
+                    place != null ? place.countryCode() : null);
+        }
+        changeLog.weatherChanged(chunk.stream().map(UnlocatedWeather::weatherInfoId).toList());
+        searchIndex.reindex(chunk.stream().map(UnlocatedWeather::markerId).toList());
+        return updated;
+    }
+}
@@ -1,11 +1,13 @@
 package com.nidorbrotkiv.backend.marker;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import com.nidorbrotkiv.backend.user.User;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -16,7 +18,10 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "marker")
+@Table(name = "marker", indexes = {
+        @Index(name = "idx_marker_user_id", columnList = "user_id"),
+        @Index(name = "idx_marker_title_id", columnList = "title, id")
+})
 public class Marker {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,15 +33,22 @@ public class Marker {
     private Boolean isPublic = true;
     private String category;
 
+    // Assigned by MarkerChangeLog with a bulk update when the change commits, never written from the entity.
+    @Column(name = "change_version", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long changeVersion;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
     @OneToMany(mappedBy = "marker", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     @JsonManagedReference("marker-image")
     private List<Image> images = new ArrayList<>();
 
     @OneToMany(mappedBy = "marker", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     @JsonManagedReference("marker-viewer")
     private Set<MarkerViewer> viewers = new HashSet<>();
 
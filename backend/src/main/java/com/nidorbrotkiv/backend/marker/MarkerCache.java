@@ -0,0 +1,100 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.nidorbrotkiv.backend.CacheGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache of marker rows by id. Rows also carry the owner's name and picture and the weather location,
+ * so changes to those must invalidate the affected markers too. Entries are dropped right away and again once the
+ * change has committed, and a reader that loaded the old row before the commit does not put it back.
+ */
+@Component
+public class MarkerCache {
+    private final MarkerRepository markerRepository;
+    private final Cache<Long, MarkerRow> cache;
+    private final CacheGenerations<Long, MarkerRow> generations;
+    private static final Logger logger = LoggerFactory.getLogger(MarkerCache.class);
+
+    public MarkerCache(MarkerRepository markerRepository,
+                       @Value("${cache.markers.size:50000}") long size,
+                       @Value("${cache.markers.ttl-seconds:600}") long ttlSeconds) {
+        this.markerRepository = markerRepository;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.generations = new CacheGenerations<>(cache);
+    }
+
+    public Optional<MarkerRow> getRow(long markerId) {
+        List<MarkerRow> rows = getRows(List.of(markerId));
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /**
+     * Returns the rows of the markers that exist, in no particular order. Missing rows are loaded with one query.
+     */
+    public List<MarkerRow> getRows(Collection<Long> markerIds) {
+        Map<Long, MarkerRow> cached = cache.getAllPresent(markerIds);
+        List<MarkerRow> rows = new ArrayList<>(cached.values());
+        if (cached.size() < markerIds.size()) {
+            Map<Long, Long> stamps = new HashMap<>();
+            markerIds.stream().filter(id -> !cached.containsKey(id)).forEach(id -> stamps.put(id, generations.stamp(id)));
+            for (MarkerRow row : markerRepository.findRowsByIdIn(stamps.keySet())) {
+                generations.putIfCurrent(row.id(), row, stamps.get(row.id()));
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    public void invalidate(long markerId) {
+        invalidateAfterCommit(() -> generations.invalidate(markerId));
+    }
+
+    public void invalidateOwner(long ownerId) {
+        invalidateMatching(row -> row.ownerId().equals(ownerId));
+    }
+
+    public void invalidateAll() {
+        invalidateAfterCommit(generations::invalidateAll);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.stats.interval-ms:300000}")
+    public void logStats() {
+        CacheStats stats = cache.stats();
+        logger.info("Marker cache: {} entries, {} hits, {} misses, hit rate {}, {} evictions",
+                cache.size(), stats.hitCount(), stats.missCount(), String.format("%.3f", stats.hitRate()),
+                stats.evictionCount());
+    }
+
+    private void invalidateMatching(Predicate<MarkerRow> predicate) {
+        invalidateAfterCommit(() -> generations.invalidateMatching(predicate));
+    }
+
+    private static void invalidateAfterCommit(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.google.common.collect.Iterables;
+import com.nidorbrotkiv.backend.follow.FollowChangedEvent;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Gives every marker change a version from one monotonically increasing counter, so a client that knows the
+ * version it last synced at can ask for what changed since. Changes are collected during the transaction and get
+ * their version just before it commits, while holding the counter row; versions therefore become visible in
+ * increasing order and a reader never misses a change with a lower version that commits later.
+ * <p>
+ * The cost is that every transaction with marker changes, including a login that changes the user's name or
+ * picture, holds the counter row from its beforeCommit until it commits, so such commits are serialized. The
+ * section is short: it locks the changed marker rows, bumps the counter and writes the new versions, and the
+ * counter is taken after the row locks so it is held only for the writes.
+ */
+@Component
+public class MarkerChangeLog {
+    private static final long COUNTER_ID = 1;
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final class PendingChanges {
+        private final Set<Long> markerIds = new HashSet<>();
+        private final Set<Long> ownerIds = new HashSet<>();
+        private final Set<String> imageUrls = new HashSet<>();
+        private final Set<Long> weatherInfoIds = new HashSet<>();
+        private final Map<Long, Long> removedMarkerOwners = new HashMap<>();
+        private final Set<Long> resetUserIds = new HashSet<>();
+        private boolean resetAll;
+    }
+
+    private final MarkerRepository markerRepository;
+    private final ChangeCounterRepository counterRepository;
+    private final MarkerTombstoneRepository tombstoneRepository;
+    private final SyncResetRepository syncResetRepository;
+    private final Duration tombstoneRetention;
+    private static final Logger logger = LoggerFactory.getLogger(MarkerChangeLog.class);
+
+    public MarkerChangeLog(MarkerRepository markerRepository, ChangeCounterRepository counterRepository,
+                           MarkerTombstoneRepository tombstoneRepository, SyncResetRepository syncResetRepository,
+                           @Value("${markers.tombstones.retention-days:30}") long tombstoneRetentionDays) {
+        this.markerRepository = markerRepository;
+        this.counterRepository = counterRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.syncResetRepository = syncResetRepository;
+        this.tombstoneRetention = Duration.ofDays(tombstoneRetentionDays);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void initialize() {
+        if (!counterRepository.existsById(COUNTER_ID)) {
+            counterRepository.save(new ChangeCounter(COUNTER_ID, 0L, 0L, 0L));
+            logger.info("Change counter created");
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onMarkerChanged(MarkerChangedEvent event) {
+        MarkerLocation marker = event.marker();
+        PendingChanges changes = pendingChanges();
+        if (event.type() != MarkerChangedEvent.ChangeType.DELETED) {
+            changes.markerIds.add(marker.id());
+        }
+        // Updates do not say whether the marker was public before, so every private marker leaves a tombstone.
+        // Followers drop a marker they never had, and the owner re-adds it from the changed markers.
+        if (event.type() == MarkerChangedEvent.ChangeType.DELETED
+                || (event.type() == MarkerChangedEvent.ChangeType.UPDATED && !Boolean.TRUE.equals(marker.isPublic()))) {
+            changes.removedMarkerOwners.put(marker.id(), marker.ownerId());
+        }
+    }
+
+    @EventListener
+    @Transactional
+    public void onFollowChanged(FollowChangedEvent event) {
+        pendingChanges().resetUserIds.add(event.edge().followerId());
+    }
+
+    /**
+     * Marks every marker of the owner as changed, for changes to the owner details shown with each marker.
+     */
+    @Transactional
+    public void ownerChanged(long ownerId) {
+        pendingChanges().ownerIds.add(ownerId);
+    }
+
+    @Transactional
+    public void imageChanged(String imageUrl) {
+        pendingChanges().imageUrls.add(imageUrl);
+    }
+
+    @Transactional
+    public void weatherChanged(Collection<Long> weatherInfoIds) {
+        pendingChanges().weatherInfoIds.addAll(weatherInfoIds);
+    }
+
+    /**
+     * Makes every client download the full list again, for bulk changes that bypass the change log.
+     */
+    @Transactional
+    public void resetAll() {
+        pendingChanges().resetAll = true;
+    }
+
+    /**
+     * Returns the version of the user's feed: it grows whenever the feed changes, so it doubles as an entity tag
+     * and as the version to ask for changes since. Pruned tombstones are covered by the pruned version, so pruning
+     * never lowers it.
+     */
+    public long feedVersion(long userId) {
+        long version = counterRepository.findById(COUNTER_ID)
+                .map(counter -> Math.max(counter.getResetVersion(), counter.getPrunedVersion()))
+                .orElse(0L);
+        version = Math.max(version, Objects.requireNonNullElse(markerRepository.findMaxFeedChangeVersion(userId), 0L));
+        version = Math.max(version, Objects.requireNonNullElse(tombstoneRepository.findMaxFeedChangeVersion(userId), 0L));
+        return Math.max(version, syncResetRepository.findById(userId).map(SyncReset::getChangeVersion).orElse(0L));
+    }
+
+    public boolean needsReset(long userId, long since) {
+        ChangeCounter counter = counterRepository.findById(COUNTER_ID).orElse(null);
+        if (counter == null || since > counter.getVersion() || since < counter.getResetVersion()
+                || since < counter.getPrunedVersion()) {
+            return true;
+        }
+        return syncResetRepository.findById(userId).map(reset -> since < reset.getChangeVersion()).orElse(false);
+    }
+
+    public List<Long> removedSince(long userId, long since) {
+        return tombstoneRepository.findFeedMarkerIdsRemovedSince(userId, since);
+    }
+
+    @Scheduled(cron = "${markers.tombstones.prune-cron:0 30 4 * * *}")
+    @Transactional
+    public void pruneTombstones() {
+        Long prunedVersion = tombstoneRepository.findMaxChangeVersionRemovedBefore(Instant.now().minus(tombstoneRetention));
+        if (prunedVersion == null) {
+            return;
+        }
+        ChangeCounter counter = lockCounter();
+        counter.setPrunedVersion(Math.max(counter.getPrunedVersion(), prunedVersion));
+        int deleted = tombstoneRepository.deleteUpToVersion(prunedVersion);
+        logger.info("Pruned {} marker tombstones up to version {}", deleted, prunedVersion);
+    }
+
+    private PendingChanges pendingChanges() {
+        PendingChanges changes = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes != null) {
+            return changes;
+        }
+        PendingChanges created = new PendingChanges();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                apply(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MarkerChangeLog.this);
+            }
+        });
+        return created;
+    }
+
+    private void apply(PendingChanges changes) {
+        SortedSet<Long> markerIds = new TreeSet<>(changes.markerIds);
+        changes.ownerIds.forEach(ownerId -> markerIds.addAll(markerRepository.findIdsByOwnerId(ownerId)));
+        changes.imageUrls.forEach(url -> markerIds.addAll(markerRepository.findIdsByImageUrl(url)));
+        for (List<Long> chunk : Iterables.partition(changes.weatherInfoIds, CHUNK_SIZE)) {
+            markerIds.addAll(markerRepository.findIdsByWeatherInfoIdIn(chunk));
+        }
+        // The rows are locked before the counter, so a transaction waiting for the counter never holds a row that
+        // the counter holder still has to update.
+        for (List<Long> chunk : Iterables.partition(markerIds, CHUNK_SIZE)) {
+            markerRepository.lockByIdIn(chunk);
+        }
+
+        ChangeCounter counter = lockCounter();
+        long version = counter.getVersion() + 1;
+        counter.setVersion(version);
+        if (changes.resetAll) {
+            counter.setResetVersion(version);
+        }
+        for (List<Long> chunk : Iterables.partition(markerIds, CHUNK_SIZE)) {
+            markerRepository.updateChangeVersion(chunk, version);
+        }
+        Instant now = Instant.now();
+        changes.removedMarkerOwners.forEach((markerId, ownerId) ->
+                tombstoneRepository.save(new MarkerTombstone(markerId, ownerId, version, now)));
+        changes.resetUserIds.forEach(userId -> syncResetRepository.save(new SyncReset(userId, version)));
+    }
+
+    private ChangeCounter lockCounter() {
+        return counterRepository.lockById(COUNTER_ID)
+                .orElseThrow(() -> new IllegalStateException("The change counter has not been created"));
+    }
+}
@@ -0,0 +1,26 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record MarkerChangedEvent(ChangeType type, MarkerLocation marker) {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static MarkerChangedEvent created(Marker marker) {
+        return new MarkerChangedEvent(ChangeType.CREATED, MarkerLocation.of(marker));
+    }
+
+    public static MarkerChangedEvent updated(Marker marker) {
+        return updated(MarkerLocation.of(marker));
+    }
+
+    public static MarkerChangedEvent updated(MarkerLocation marker) {
+        return new MarkerChangedEvent(ChangeType.UPDATED, marker);
+    }
+
+    public static MarkerChangedEvent deleted(Marker marker) {
+        return new MarkerChangedEvent(ChangeType.DELETED, MarkerLocation.of(marker));
+    }
+}
@@ -0,0 +1,14 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.List;
+
+/**
+ * The markers that changed in a user's feed after a version, and the ids of the markers that left it. When
+ * {@code reset} is set the changes could not be described and the client must download the full list instead.
+ */
+public record MarkerChanges(long version, boolean reset, List<MarkerView> markers, List<Long> removedMarkerIds) {
+
+    static MarkerChanges reset(long version) {
+        return new MarkerChanges(version, true, List.of(), List.of());
+    }
+}
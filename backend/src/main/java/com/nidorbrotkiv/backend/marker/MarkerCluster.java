@@ -0,0 +1,7 @@
+package com.nidorbrotkiv.backend.marker;
+
+/**
+ * A cluster centroid and the number of markers it stands for. {@code markerId} is only set for single markers.
+ */
+public record MarkerCluster(double latitude, double longitude, int count, Long markerId) {
+}
@@ -0,0 +1,252 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Precomputed marker clusters for every zoom level. Each zoom level is a grid over Web Mercator tile space whose
+ * cells split into four at the next level, and every cell keeps a running count and coordinate sum per owner. The
+ * aggregates are kept separately for an owner's public markers, so a viewer's clusters are merged from their own
+ * markers and the public markers of the users they follow without visiting individual markers.
+ */
+@Component
+public class MarkerClusterIndex {
+    public static final int MAX_ZOOM = 16;
+    private static final int CELLS_PER_TILE = 4;
+    private static final double MAX_MERCATOR_LATITUDE = 85.05112878;
+
+    private static final class Cluster {
+        private int count;
+        private double latitudeSum;
+        private double longitudeSum;
+        // Equals the marker id whenever the cluster holds a single marker.
+        private long markerIdSum;
+
+        private void add(MarkerLocation location, int sign) {
+            count += sign;
+            latitudeSum += sign * location.latitude();
+            longitudeSum += sign * location.longitude();
+            markerIdSum += sign * location.id();
+        }
+
+        private void merge(Cluster other) {
+            count += other.count;
+            latitudeSum += other.latitudeSum;
+            longitudeSum += other.longitudeSum;
+            markerIdSum += other.markerIdSum;
+        }
+    }
+
+    private static final class Layer {
+        private final List<Map<Long, Cluster>> zooms = new ArrayList<>(MAX_ZOOM + 1);
+
+        private Layer() {
+            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                zooms.add(new HashMap<>());
+            }
+        }
+
+        private void add(MarkerLocation location, int sign) {
+            for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+                long key = cellKey(zoom, location.latitude(), location.longitude());
+                Map<Long, Cluster> cells = zooms.get(zoom);
+                Cluster cluster = cells.computeIfAbsent(key, k -> new Cluster());
+                cluster.add(location, sign);
+                if (cluster.count == 0) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return zooms.get(0).isEmpty();
+        }
+    }
+
+    private record OwnerLayers(Layer all, Layer published) {
+    }
+
+    private final MarkerRepository markerRepository;
+    private final Map<Long, MarkerLocation> locations = new HashMap<>();
+    private final Map<Long, OwnerLayers> owners = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final Logger logger = LoggerFactory.getLogger(MarkerClusterIndex.class);
+
+    public MarkerClusterIndex(MarkerRepository markerRepository) {
+        this.markerRepository = markerRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<MarkerLocation> all = markerRepository.findAllLocations();
+        lock.writeLock().lock();
+        try {
+            locations.clear();
+            owners.clear();
+            all.forEach(this::add);
+            logger.info("Cluster index built with {} markers for {} owners", locations.size(), owners.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarkerChanged(MarkerChangedEvent event) {
+        if (event.type() == MarkerChangedEvent.ChangeType.DELETED) {
+            remove(event.marker().id());
+        } else {
+            put(event.marker());
+        }
+    }
+
+    public void put(MarkerLocation location) {
+        lock.writeLock().lock();
+        try {
+            subtract(location.id());
+            add(location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long markerId) {
+        lock.writeLock().lock();
+        try {
+            subtract(markerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the clusters at the given zoom level whose centroid lies inside the bounding box, built from the
+     * markers of {@code userId} and the public markers of {@code followedUserIds}.
+     */
+    public List<MarkerCluster> findClusters(int zoom, BoundingBox bbox, long userId, long[] followedUserIds) {
+        int level = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        Map<Long, Cluster> merged = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            OwnerLayers own = owners.get(userId);
+            if (own != null) {
+                collect(own.all().zooms.get(level), level, bbox, merged);
+            }
+            for (long followedUserId : followedUserIds) {
+                OwnerLayers followed = owners.get(followedUserId);
+                if (followed != null && followedUserId != userId) {
+                    collect(followed.published().zooms.get(level), level, bbox, merged);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<MarkerCluster> result = new ArrayList<>();
+        for (Cluster cluster : merged.values()) {
+            double latitude = cluster.latitudeSum / cluster.count;
+            double longitude = cluster.longitudeSum / cluster.count;
+            if (bbox.contains(latitude, longitude)) {
+                result.add(new MarkerCluster(latitude, longitude, cluster.count,
+                        cluster.count == 1 ? cluster.markerIdSum : null));
+            }
+        }
+        return result;
+    }
+
+    private static void collect(Map<Long, Cluster> cells, int zoom, BoundingBox bbox, Map<Long, Cluster> merged) {
+        if (cells.isEmpty()) {
+            return;
+        }
+        int size = gridSize(zoom);
+        int minRow = row(zoom, bbox.maxLatitude());
+        int maxRow = row(zoom, bbox.minLatitude());
+        int minColumn = column(zoom, bbox.minLongitude());
+        int maxColumn = column(zoom, bbox.maxLongitude());
+        int columnCount = bbox.crossesAntimeridian()
+                ? (size - minColumn) + maxColumn + 1
+                : maxColumn - minColumn + 1;
+        long coveredCells = (long) (maxRow - minRow + 1) * columnCount;
+
+        if (coveredCells > cells.size()) {
+            cells.forEach((key, cluster) -> {
+                int row = (int) (key / size);
+                int column = (int) (key % size);
+                boolean columnCovered = bbox.crossesAntimeridian()
+                        ? column >= minColumn || column <= maxColumn
+                        : column >= minColumn && column <= maxColumn;
+                if (row >= minRow && row <= maxRow && columnCovered) {
+                    merged.computeIfAbsent(key, k -> new Cluster()).merge(cluster);
+                }
+            });
+            return;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                long key = (long) row * size + (minColumn + i) % size;
+                Cluster cluster = cells.get(key);
+                if (cluster != null) {
+                    merged.computeIfAbsent(key, k -> new Cluster()).merge(cluster);
+                }
+            }
+        }
+    }
+
+    private void add(MarkerLocation location) {
+        if (!location.hasCoordinates()) {
+            return;
+        }
+        locations.put(location.id(), location);
+        OwnerLayers layers = owners.computeIfAbsent(location.ownerId(), id -> new OwnerLayers(new Layer(), new Layer()));
+        layers.all().add(location, 1);
+        if (Boolean.TRUE.equals(location.isPublic())) {
+            layers.published().add(location, 1);
+        }
+    }
+
+    private void subtract(long markerId) {
+        MarkerLocation previous = locations.remove(markerId);
+        if (previous == null) {
+            return;
+        }
+        OwnerLayers layers = owners.get(previous.ownerId());
+        layers.all().add(previous, -1);
+        if (Boolean.TRUE.equals(previous.isPublic())) {
+            layers.published().add(previous, -1);
+        }
+        if (layers.all().isEmpty()) {
+            owners.remove(previous.ownerId());
+        }
+    }
+
+    private static long cellKey(int zoom, double latitude, double longitude) {
+        return (long) row(zoom, latitude) * gridSize(zoom) + column(zoom, longitude);
+    }
+
+    private static int gridSize(int zoom) {
+        return CELLS_PER_TILE << zoom;
+    }
+
+    private static int row(int zoom, double latitude) {
+        double clamped = Math.max(-MAX_MERCATOR_LATITUDE, Math.min(MAX_MERCATOR_LATITUDE, latitude));
+        double sin = Math.sin(Math.toRadians(clamped));
+        double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return clamp((int) Math.floor(y * gridSize(zoom)), gridSize(zoom));
+    }
+
+    private static int column(int zoom, double longitude) {
+        return clamp((int) Math.floor((longitude + 180) / 360 * gridSize(zoom)), gridSize(zoom));
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.min(size - 1, Math.max(0, index));
+    }
+}
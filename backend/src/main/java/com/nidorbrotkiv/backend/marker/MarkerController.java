@@ -1,15 +1,22 @@
 package com.nidorbrotkiv.backend.marker;
 
+import com.nidorbrotkiv.backend.bucket.DirectUpload;
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import com.nidorbrotkiv.backend.geo.GreatCircle;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -20,31 +27,160 @@ import java.util.NoSuchElementException;
 @RequestMapping("/api/markers")
 public class MarkerController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_NEARBY_RESULTS = 100;
     private final MarkerService markerService;
+    private final MarkerEnricher markerEnricher;
+    private final MarkerEventStream markerEventStream;
     private static final Logger logger = LoggerFactory.getLogger(MarkerController.class);
 
     @Autowired
-    public MarkerController(MarkerService markerService) {
+    public MarkerController(MarkerService markerService, MarkerEnricher markerEnricher,
+                            MarkerEventStream markerEventStream) {
         this.markerService = markerService;
+        this.markerEnricher = markerEnricher;
+        this.markerEventStream = markerEventStream;
     }
 
     @GetMapping("/user")
-    public ResponseEntity<List<Marker>> getMarkers(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<List<MarkerView>> getMarkers(@AuthenticationPrincipal UserDetails userDetails,
+                                                   @RequestParam(value = "bbox", required = false) String bbox,
+                                                   WebRequest request) {
         try {
-            List<Marker> markers = markerService.getMarkers(userDetails.getUsername());
-            return ResponseEntity.ok(markers);
+            if (bbox != null) {
+                return ResponseEntity.ok(markerService.getMarkersInBoundingBox(userDetails.getUsername(), BoundingBox.parse(bbox)));
+            }
+            // The feed version changes with every change to the feed, so the list is only built when it differs.
+            String eTag = "\"" + markerService.getMarkerFeedVersion(userDetails.getUsername()) + "\"";
+            if (request.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            List<MarkerView> markers = markerService.getMarkers(userDetails.getUsername());
+            return ResponseEntity.ok().eTag(eTag).body(markers);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid bounding box: {}", bbox, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         } catch (NoSuchElementException e) {
             logger.error("Error fetching markers for user: {}", userDetails.getUsername(), e);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Markers not found for user: " + userDetails.getUsername(), e);
         }
     }
 
+    @GetMapping("/changes")
+    public ResponseEntity<MarkerChanges> getMarkerChanges(@AuthenticationPrincipal UserDetails userDetails,
+                                                          @RequestParam("since") long since) {
+        try {
+            return ResponseEntity.ok(markerService.getMarkerChanges(userDetails.getUsername(), since));
+        } catch (NoSuchElementException e) {
+            logger.error("Error fetching marker changes for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMarkerEvents(@AuthenticationPrincipal UserDetails userDetails) {
+        try {
+            return markerEventStream.subscribe(userDetails.getUsername());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+    }
+
+    @GetMapping(value = "/user/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMarkers(@AuthenticationPrincipal UserDetails userDetails) {
+        String email = userDetails.getUsername();
+        StreamingResponseBody body = outputStream -> markerService.streamMarkers(email, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/user/page")
+    public ResponseEntity<MarkerPage> getMarkerPage(@AuthenticationPrincipal UserDetails userDetails,
+                                                    @RequestParam(value = "sort", defaultValue = "date") String sort,
+                                                    @RequestParam(value = "direction", defaultValue = "desc") String direction,
+                                                    @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                    @RequestParam(value = "cursor", required = false) String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (!"asc".equalsIgnoreCase(direction) && !"desc".equalsIgnoreCase(direction)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Direction must be asc or desc");
+        }
+        try {
+            MarkerPage page = markerService.getMarkerPage(userDetails.getUsername(), MarkerSort.fromString(sort),
+                    "asc".equalsIgnoreCase(direction), cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid page request for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (NoSuchElementException e) {
+            logger.error("Error fetching marker page for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + userDetails.getUsername(), e);
+        }
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyMarker>> getNearbyMarkers(@AuthenticationPrincipal UserDetails userDetails,
+                                                               @RequestParam("lat") double latitude,
+                                                               @RequestParam("lon") double longitude,
+                                                               @RequestParam(value = "k", defaultValue = "20") int k,
+                                                               @RequestParam(value = "maxKm", required = false) Double maxKm) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates: " + latitude + "," + longitude);
+        }
+        if (k < 1 || k > MAX_NEARBY_RESULTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and " + MAX_NEARBY_RESULTS);
+        }
+        if (maxKm != null && maxKm <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxKm must be positive");
+        }
+        try {
+            double radius = maxKm != null ? maxKm : GreatCircle.HALF_CIRCUMFERENCE_KM;
+            return ResponseEntity.ok(markerService.getNearbyMarkers(userDetails.getUsername(), latitude, longitude, k, radius));
+        } catch (NoSuchElementException e) {
+            logger.error("Error fetching nearby markers for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + userDetails.getUsername(), e);
+        }
+    }
+
+    @GetMapping("/clusters")
+    public ResponseEntity<List<MarkerCluster>> getMarkerClusters(@AuthenticationPrincipal UserDetails userDetails,
+                                                                 @RequestParam("zoom") int zoom,
+                                                                 @RequestParam("bbox") String bbox) {
+        try {
+            return ResponseEntity.ok(markerService.getMarkerClusters(userDetails.getUsername(), zoom, BoundingBox.parse(bbox)));
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid bounding box: {}", bbox, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (NoSuchElementException e) {
+            logger.error("Error fetching marker clusters for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + userDetails.getUsername(), e);
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<MarkerSearchPage> searchMarkers(@AuthenticationPrincipal UserDetails userDetails,
+                                                          @RequestParam(value = "q", defaultValue = "") String query,
+                                                          @RequestParam(value = "year", required = false) Integer year,
+                                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                                          @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must be non-negative and size between 1 and " + MAX_PAGE_SIZE);
+        }
+        try {
+            return ResponseEntity.ok(markerService.searchMarkers(userDetails.getUsername(), query, year, page, size));
+        } catch (NoSuchElementException e) {
+            logger.error("Error searching markers for user: {}", userDetails.getUsername(), e);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + userDetails.getUsername(), e);
+        }
+    }
 
     @PostMapping("/user")
-    public ResponseEntity<Long> addMarker(@RequestBody Marker marker, @AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<MarkerView> addMarker(@RequestBody Marker marker, @AuthenticationPrincipal UserDetails userDetails) {
         try {
-            long markerId = markerService.addMarker(userDetails.getUsername(), marker);
-            return ResponseEntity.status(HttpStatus.CREATED).body(markerId);
+            markerEnricher.enrich(marker);
+            return ResponseEntity.status(HttpStatus.CREATED).body(markerService.addMarker(userDetails.getUsername(), marker));
         } catch (Exception e) {
             logger.error("Error adding marker for user: {}", userDetails.getUsername(), e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error adding marker for user: " + userDetails.getUsername(), e);
@@ -52,9 +188,11 @@ public class MarkerController {
     }
 
     @PostMapping("/{markerId}/images")
-    public ResponseEntity<Map<String, String>> uploadImageToMarker(@PathVariable Long markerId, @RequestParam("image") MultipartFile imageFile) {
+    public ResponseEntity<Map<String, String>> uploadImageToMarker(@AuthenticationPrincipal UserDetails userDetails,
+                                                                   @PathVariable Long markerId,
+                                                                   @RequestParam("image") MultipartFile imageFile) {
         try {
-            String imageUrl = markerService.addImage(markerId, imageFile);
+            String imageUrl = markerService.addImage(userDetails.getUsername(), markerId, imageFile);
             return ResponseEntity.ok(Map.of("imageUrl", imageUrl));
         } catch (IOException e) {
             logger.error("Error uploading image for marker: {}", markerId, e);
@@ -62,11 +200,42 @@ public class MarkerController {
         }
     }
 
+    @PostMapping("/{markerId}/images/uploads")
+    public ResponseEntity<DirectUpload> createDirectUpload(@AuthenticationPrincipal UserDetails userDetails,
+                                                           @PathVariable Long markerId,
+                                                           @RequestParam("contentType") String contentType) {
+        try {
+            return ResponseEntity.ok(markerService.createDirectUpload(userDetails.getUsername(), markerId, contentType));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/{markerId}/images/uploads/{imageName}")
+    public ResponseEntity<Map<String, String>> finalizeDirectUpload(@AuthenticationPrincipal UserDetails userDetails,
+                                                                    @PathVariable Long markerId,
+                                                                    @PathVariable String imageName) {
+        try {
+            return ResponseEntity.ok(Map.of("imageUrl",
+                    markerService.finalizeDirectUpload(userDetails.getUsername(), markerId, imageName)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
     @DeleteMapping("/images")
-    public ResponseEntity<String> deleteImage(@RequestParam("imageUrl") String imageUrl) {
+    public ResponseEntity<String> deleteImage(@AuthenticationPrincipal UserDetails userDetails,
+                                              @RequestParam("imageUrl") String imageUrl,
+                                              @RequestParam("markerId") long markerId) {
         try {
-            markerService.deleteImage(imageUrl);
+            markerService.deleteImage(userDetails.getUsername(), imageUrl, markerId);
             return ResponseEntity.ok("Image deleted successfully");
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error deleting image: {}", imageUrl, e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to delete image: " + e.getMessage(), e);
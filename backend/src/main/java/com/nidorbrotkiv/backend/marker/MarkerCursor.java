@@ -0,0 +1,44 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination. It records the sort it was issued for together with the sort
+ * key and id of the last marker on the previous page; a missing sort key is encoded by leaving out its field.
+ */
+public record MarkerCursor(MarkerSort sort, boolean ascending, long lastId, String lastSortKey) {
+    private static final String SEPARATOR = "|";
+
+    public static MarkerCursor after(MarkerSort sort, boolean ascending, MarkerView marker) {
+        Object sortKey = sort.sortKeyOf(marker);
+        return new MarkerCursor(sort, ascending, marker.id(), sortKey != null ? sortKey.toString() : null);
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + (ascending ? "asc" : "desc") + SEPARATOR + lastId
+                + (lastSortKey != null ? SEPARATOR + lastSortKey : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MarkerCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            MarkerSort sort = MarkerSort.valueOf(parts[0]);
+            MarkerCursor cursor = new MarkerCursor(sort, "asc".equals(parts[1]), Long.parseLong(parts[2]),
+                    parts.length == 4 ? parts[3] : null);
+            cursor.sortKey();
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    Object sortKey() {
+        return sort.parseSortKey(lastSortKey);
+    }
+}
@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record MarkerDistance(MarkerLocation location, double distanceKm) {
+}
@@ -0,0 +1,49 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.ReverseGeocoder;
+import com.nidorbrotkiv.backend.weather.WeatherService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills in the details of a new marker that the client did not send. Runs before the marker is saved, so the
+ * remote lookups do not hold a database connection.
+ */
+@Component
+public class MarkerEnricher {
+    private final WeatherService weatherService;
+    private final ReverseGeocoder reverseGeocoder;
+
+    @Autowired
+    public MarkerEnricher(WeatherService weatherService, ReverseGeocoder reverseGeocoder) {
+        this.weatherService = weatherService;
+        this.reverseGeocoder = reverseGeocoder;
+    }
+
+    public void enrich(Marker marker) {
+        if (marker.getLatitude() == null || marker.getLongitude() == null) {
+            return;
+        }
+        WeatherInfo weatherInfo = marker.getWeatherInfo() != null ? marker.getWeatherInfo() : new WeatherInfo();
+        if (weatherInfo.getTemp() == null) {
+            weatherService.getCurrentWeather(marker.getLatitude(), marker.getLongitude()).ifPresent(report -> {
+                weatherInfo.setTemp(report.temp());
+                weatherInfo.setIcon(report.icon());
+                weatherInfo.setCountry(report.country());
+                weatherInfo.setDescription(report.description());
+            });
+        }
+        if (weatherInfo.getLocation() == null && reverseGeocoder.isAvailable()) {
+            reverseGeocoder.findNearest(marker.getLatitude(), marker.getLongitude()).ifPresentOrElse(place -> {
+                weatherInfo.setLocation(place.name());
+                if (weatherInfo.getCountry() == null) {
+                    weatherInfo.setCountry(place.countryCode());
+                }
+            }, () -> weatherInfo.setLocation(LocationBackfill.UNKNOWN_LOCATION));
+        }
+        if (weatherInfo.getDt() == null) {
+            weatherInfo.setDt(System.currentTimeMillis() / 1000);
+        }
+        marker.setWeatherInfo(weatherInfo);
+    }
+}
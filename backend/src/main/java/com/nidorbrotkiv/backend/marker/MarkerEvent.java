@@ -0,0 +1,7 @@
+package com.nidorbrotkiv.backend.marker;
+
+/**
+ * Payload of a marker event sent to subscribers. {@code marker} is null for deletions.
+ */
+public record MarkerEvent(long markerId, MarkerView marker) {
+}
@@ -0,0 +1,310 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nidorbrotkiv.backend.follow.FollowGraph;
+import com.nidorbrotkiv.backend.user.CachedUser;
+import com.nidorbrotkiv.backend.user.UserCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed marker changes to connected clients as server-sent events: changes to the subscriber's own
+ * markers and to the public markers of the users they follow. Connections are asynchronous requests, so an idle
+ * subscriber holds no thread. Every subscriber has a bounded queue that a small shared pool drains; a client that
+ * falls behind until its queue is full is disconnected rather than holding back the others, and reconnects to
+ * catch up through the changes endpoint. A write to a client that stops reading blocks its worker, so a watchdog
+ * disconnects subscribers whose write has blocked longer than the send timeout and adds a worker for as long as
+ * the write stays blocked. The emitter is only ever completed by its drain, since completing it waits for the
+ * blocked write.
+ */
+@Component
+public class MarkerEventStream {
+    private static final String HEARTBEAT = "heartbeat";
+
+    private static final class Subscriber {
+        private final long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean compensated = new AtomicBoolean();
+        private volatile long sendStartedNanos;
+        private volatile boolean closed;
+        // Only changed by the subscriber's drain.
+        private volatile boolean completed;
+
+        private Subscriber(long userId, SseEmitter emitter, int queueSize) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+
+    private final UserCache userCache;
+    private final MarkerService markerService;
+    private final FollowGraph followGraph;
+    private final ObjectMapper objectMapper;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final int queueSize;
+    private final long timeoutMillis;
+    private final int maxSubscribersPerUser;
+    private final long sendTimeoutNanos;
+    private final int maxWorkers;
+    private static final Logger logger = LoggerFactory.getLogger(MarkerEventStream.class);
+
+    public MarkerEventStream(UserCache userCache, MarkerService markerService, FollowGraph followGraph,
+                             ObjectMapper objectMapper,
+                             @Value("${markers.events.workers:4}") int workers,
+                             @Value("${markers.events.queue-size:100}") int queueSize,
+                             @Value("${markers.events.timeout-ms:1800000}") long timeoutMillis,
+                             @Value("${markers.events.max-per-user:5}") int maxSubscribersPerUser,
+                             @Value("${markers.events.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.userCache = userCache;
+        this.markerService = markerService;
+        this.followGraph = followGraph;
+        this.objectMapper = objectMapper;
+        this.queueSize = queueSize;
+        this.timeoutMillis = timeoutMillis;
+        this.maxSubscribersPerUser = maxSubscribersPerUser;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        // At most as many extra workers as regular ones stand in for blocked writes.
+        this.maxWorkers = 2 * workers;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Each subscriber has at most one drain task queued, so the task queue is bounded by the subscriber count.
+        this.executor = new ThreadPoolExecutor(workers, maxWorkers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "marker-events-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Opens an event stream for the user. Fails with {@link IllegalStateException} when the user already has the
+     * maximum number of open streams.
+     */
+    public SseEmitter subscribe(String email) {
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> new NoSuchElementException("User not found"));
+        return subscribe(user.id(), new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(long id, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(id, emitter, queueSize);
+        subscribers.compute(id, (userId, userSubscribers) -> {
+            Set<Subscriber> result = userSubscribers != null ? userSubscribers : ConcurrentHashMap.newKeySet();
+            if (result.size() >= maxSubscribersPerUser) {
+                throw new IllegalStateException("Too many open marker event streams");
+            }
+            result.add(subscriber);
+            return result;
+        });
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> close(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        enqueue(subscriber, SseEmitter.event().name("ready").data(""));
+        logger.info("Marker event stream opened for user {}", id);
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarkerChanged(MarkerChangedEvent event) {
+        MarkerLocation location = event.marker();
+        List<Subscriber> owners = subscribersOf(location.ownerId());
+        List<Subscriber> followers = new ArrayList<>();
+        for (long followerId : followGraph.followers(location.ownerId())) {
+            followers.addAll(subscribersOf(followerId));
+        }
+        if (owners.isEmpty() && followers.isEmpty()) {
+            return;
+        }
+
+        MarkerView marker = event.type() == MarkerChangedEvent.ChangeType.DELETED
+                ? null
+                : markerService.findMarkerView(location.id()).orElse(null);
+        String eventName = marker != null ? eventName(event.type()) : eventName(MarkerChangedEvent.ChangeType.DELETED);
+        String payload = toJson(new MarkerEvent(location.id(), marker));
+        String deletedPayload = toJson(new MarkerEvent(location.id(), null));
+        owners.forEach(subscriber -> enqueue(subscriber, SseEmitter.event().name(eventName).data(payload)));
+
+        if (marker != null && Boolean.TRUE.equals(marker.isPublic())) {
+            followers.forEach(subscriber -> enqueue(subscriber, SseEmitter.event().name(eventName).data(payload)));
+        } else if (event.type() != MarkerChangedEvent.ChangeType.CREATED) {
+            // A private marker may just have left the followers' maps, so they are told to drop it.
+            String deleted = eventName(MarkerChangedEvent.ChangeType.DELETED);
+            followers.forEach(subscriber -> enqueue(subscriber, SseEmitter.event().name(deleted).data(deletedPayload)));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${markers.events.heartbeat-ms:20000}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(userSubscribers ->
+                userSubscribers.forEach(subscriber -> enqueue(subscriber, SseEmitter.event().comment(HEARTBEAT))));
+    }
+
+    @Scheduled(fixedDelayString = "${markers.events.watchdog-ms:1000}")
+    public void closeStalledSubscribers() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            long sendStarted = subscriber.sendStartedNanos;
+            if (sendStarted == 0 || now - sendStarted < sendTimeoutNanos) {
+                return;
+            }
+            logger.warn("Disconnecting marker event subscriber of user {} whose write blocked for more than {} ms",
+                    subscriber.userId, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            close(subscriber);
+            if (!addWorker()) {
+                return;
+            }
+            if (!subscriber.compensated.compareAndSet(false, true)) {
+                removeWorker();
+            } else if (subscriber.sendStartedNanos != sendStarted && subscriber.compensated.getAndSet(false)) {
+                // The write returned meanwhile without seeing the flag.
+                removeWorker();
+            }
+        }));
+    }
+
+    public int subscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(this::close));
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Subscriber> subscribersOf(long userId) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        return userSubscribers != null ? List.copyOf(userSubscribers) : List.of();
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (!subscriber.queue.offer(event)) {
+            logger.warn("Disconnecting slow marker event subscriber of user {}", subscriber.userId);
+            close(subscriber);
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+                remove(subscriber);
+                subscriber.queue.clear();
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closed && (event = subscriber.queue.poll()) != null) {
+                send(subscriber, event);
+            }
+            if (subscriber.closed) {
+                complete(subscriber);
+                return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Marker event stream of user {} closed: {}", subscriber.userId, e.getMessage());
+            subscriber.closed = true;
+            remove(subscriber);
+            complete(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event offered, or a close, after the queue was found empty but before the flag was cleared would
+        // otherwise wait.
+        if (!subscriber.queue.isEmpty() || (subscriber.closed && !subscriber.completed)) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        subscriber.sendStartedNanos = System.nanoTime();
+        try {
+            subscriber.emitter.send(event);
+        } finally {
+            subscriber.sendStartedNanos = 0;
+            if (subscriber.compensated.getAndSet(false)) {
+                removeWorker();
+            }
+        }
+    }
+
+    /**
+     * Stops sending to the subscriber. Its drain completes the emitter, so the caller never waits for a blocked write.
+     */
+    private void close(Subscriber subscriber) {
+        subscriber.closed = true;
+        remove(subscriber);
+        subscriber.queue.clear();
+        scheduleDrain(subscriber);
+    }
+
+    private void complete(Subscriber subscriber) {
+        subscriber.queue.clear();
+        if (!subscriber.completed) {
+            subscriber.completed = true;
+            subscriber.emitter.complete();
+        }
+    }
+
+    private synchronized boolean addWorker() {
+        if (executor.getCorePoolSize() >= maxWorkers) {
+            return false;
+        }
+        executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+        return true;
+    }
+
+    private synchronized void removeWorker() {
+        executor.setCorePoolSize(executor.getCorePoolSize() - 1);
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (userId, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private String toJson(MarkerEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize marker event", e);
+        }
+    }
+
+    private static String eventName(MarkerChangedEvent.ChangeType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.function.LongPredicate;
+
+public record MarkerLocation(Long id, Long ownerId, Double latitude, Double longitude, Boolean isPublic) {
+
+    public static MarkerLocation of(Marker marker) {
+        return new MarkerLocation(
+                marker.getId(),
+                marker.getUser().getId(),
+                marker.getLatitude(),
+                marker.getLongitude(),
+                marker.getIsPublic()
+        );
+    }
+
+    public static MarkerLocation of(MarkerRow row) {
+        return new MarkerLocation(row.id(), row.ownerId(), row.latitude(), row.longitude(), row.isPublic());
+    }
+
+    public boolean hasCoordinates() {
+        return latitude != null && longitude != null;
+    }
+
+    public boolean isVisibleTo(long userId, LongPredicate isFollowed) {
+        return ownerId == userId || (Boolean.TRUE.equals(isPublic) && isFollowed.test(ownerId));
+    }
+}
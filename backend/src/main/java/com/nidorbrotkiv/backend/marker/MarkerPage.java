@@ -0,0 +1,6 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.List;
+
+public record MarkerPage(List<MarkerView> markers, String nextCursor) {
+}
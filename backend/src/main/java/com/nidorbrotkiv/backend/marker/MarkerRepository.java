@@ -1,11 +1,19 @@
 package com.nidorbrotkiv.backend.marker;
 
+import jakarta.persistence.QueryHint;
+import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface MarkerRepository extends JpaRepository<Marker, Long> {
+public interface MarkerRepository extends JpaRepository<Marker, Long>, MarkerRepositoryCustom {
 
     @Query("SELECT m FROM Marker m LEFT JOIN m.viewers v WHERE m.user.email = :email")
     List<Marker> findByOwnerEmail(String email);
@@ -15,4 +23,66 @@ public interface MarkerRepository extends JpaRepository<Marker, Long> {
 
     @Query("SELECT m FROM Marker m LEFT JOIN m.viewers v WHERE v.user.email = :email")
     List<Marker> findByViewerEmail(String email);
+
+    String FEED_ENTRY_JOIN = "JOIN FeedEntry f ON f.markerId = m.id WHERE f.userId = :userId";
+
+    @Query(MarkerRow.SELECT + FEED_ENTRY_JOIN)
+    List<MarkerRow> findFeedRowsByUserId(long userId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query(MarkerRow.SELECT + FEED_ENTRY_JOIN)
+    Stream<MarkerRow> streamFeedRowsByUserId(long userId);
+
+    @Query(MarkerRow.SELECT + FEED_ENTRY_JOIN + " AND m.changeVersion > :since")
+    List<MarkerRow> findFeedRowsChangedSince(long userId, long since);
+
+    @Query("SELECT MAX(m.changeVersion) FROM Marker m " + FEED_ENTRY_JOIN)
+    Long findMaxFeedChangeVersion(long userId);
+
+    @Query("SELECT m.id FROM Marker m WHERE m.user.id = :ownerId")
+    List<Long> findIdsByOwnerId(long ownerId);
+
+    @Query("SELECT i.marker.id FROM Image i WHERE i.url = :url")
+    List<Long> findIdsByImageUrl(String url);
+
+    @Query("SELECT m.id FROM Marker m WHERE m.weatherInfo.id IN :weatherInfoIds")
+    List<Long> findIdsByWeatherInfoIdIn(Collection<Long> weatherInfoIds);
+
+    @Query(value = "SELECT id FROM marker WHERE id IN :ids ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockByIdIn(Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Marker m SET m.changeVersion = :version WHERE m.id IN :ids")
+    int updateChangeVersion(Collection<Long> ids, long version);
+
+    @Query(MarkerRow.SELECT + "WHERE m.id IN :ids")
+    List<MarkerRow> findRowsByIdIn(Collection<Long> ids);
+
+    @Query(MarkerRow.SELECT + "WHERE m.id > :afterId ORDER BY m.id")
+    List<MarkerRow> findRowsAfter(long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Marker m SET m.title = :title WHERE m.id = :markerId")
+    int updateTitle(long markerId, String title);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Marker m SET m.description = :description WHERE m.id = :markerId")
+    int updateDescription(long markerId, String description);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Marker m SET m.category = :category WHERE m.id = :markerId")
+    int updateCategory(long markerId, String category);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Marker m SET m.isPublic = :isPublic WHERE m.id = :markerId")
+    int updateIsPublic(long markerId, Boolean isPublic);
+
+    @Query("SELECT new com.nidorbrotkiv.backend.marker.MarkerLocation(m.id, m.user.id, m.latitude, m.longitude, m.isPublic) " +
+            "FROM Marker m WHERE m.latitude IS NOT NULL AND m.longitude IS NOT NULL")
+    List<MarkerLocation> findAllLocations();
 }
@@ -0,0 +1,7 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.List;
+
+public interface MarkerRepositoryCustom {
+    List<MarkerRow> findFeedPage(long userId, MarkerSort sort, boolean ascending, MarkerCursor after, int limit);
+}
@@ -0,0 +1,61 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+public class MarkerRepositoryImpl implements MarkerRepositoryCustom {
+    private static final String FEED_PAGE_QUERY = MarkerRow.SELECT + MarkerRepository.FEED_ENTRY_JOIN;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<MarkerRow> findFeedPage(long userId, MarkerSort sort, boolean ascending, MarkerCursor after, int limit) {
+        String comparison = ascending ? ">" : "<";
+        String direction = ascending ? " ASC" : " DESC";
+        StringBuilder jpql = new StringBuilder(FEED_PAGE_QUERY);
+
+        if (after != null) {
+            if (sort.hasSortKey()) {
+                String column = sort.getSortColumn();
+                jpql.append(" AND (");
+                if (after.sortKey() == null) {
+                    jpql.append(column).append(" IS NULL AND m.id ").append(comparison).append(" :lastId");
+                    if (!ascending) {
+                        jpql.append(" OR ").append(column).append(" IS NOT NULL");
+                    }
+                } else {
+                    jpql.append(column).append(' ').append(comparison).append(" :lastKey")
+                            .append(" OR (").append(column).append(" = :lastKey AND m.id ").append(comparison).append(" :lastId)");
+                    if (ascending) {
+                        jpql.append(" OR ").append(column).append(" IS NULL");
+                    }
+                }
+                jpql.append(')');
+            } else {
+                jpql.append(" AND m.id ").append(comparison).append(" :lastId");
+            }
+        }
+
+        // Nulls go where the indexes keep them, so the database can read the rows in index order.
+        jpql.append(" ORDER BY ");
+        if (sort.hasSortKey()) {
+            jpql.append(sort.getSortColumn()).append(direction).append(ascending ? " NULLS LAST" : " NULLS FIRST").append(", ");
+        }
+        jpql.append("m.id").append(direction);
+
+        TypedQuery<MarkerRow> query = entityManager.createQuery(jpql.toString(), MarkerRow.class)
+                .setParameter("userId", userId)
+                .setMaxResults(limit);
+        if (after != null) {
+            query.setParameter("lastId", after.lastId());
+            if (after.sortKey() != null) {
+                query.setParameter("lastKey", after.sortKey());
+            }
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,12 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record MarkerRow(Long id, Double latitude, Double longitude, String title, String description, Boolean isPublic,
+                        String category, Long ownerId, String ownerName, String ownerEmail, String ownerProfileImageUrl,
+                        Long weatherInfoId, Double temp, Long dt, String location, String icon, String country,
+                        String weatherDescription) {
+    static final String SELECT = "SELECT new com.nidorbrotkiv.backend.marker.MarkerRow(" +
+            "m.id, m.latitude, m.longitude, m.title, m.description, m.isPublic, m.category, " +
+            "u.id, u.name, u.email, u.profileImageUrl, " +
+            "w.id, w.temp, w.dt, w.location, w.icon, w.country, w.description) " +
+            "FROM Marker m JOIN m.user u LEFT JOIN m.weatherInfo w ";
+}
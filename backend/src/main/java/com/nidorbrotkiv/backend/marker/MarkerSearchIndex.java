@@ -0,0 +1,312 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index from trigrams to marker ids. A query token matches a field when enough of its trigrams
+ * occur in that field, which tolerates typos and partial words; matches are scored by field weight and overlap.
+ */
+@Component
+public class MarkerSearchIndex {
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+    private static final double MIN_TOKEN_SIMILARITY = 0.5;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private enum Field {
+        TITLE(0.4), DESCRIPTION(0.3), CATEGORY(0.2), OWNER(0.1), LOCATION(0.1);
+
+        private final double weight;
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private record Document(MarkerLocation location, Long dt, Integer year, List<Set<String>> fields) {
+    }
+
+    private final MarkerRepository markerRepository;
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final Logger logger = LoggerFactory.getLogger(MarkerSearchIndex.class);
+
+    public MarkerSearchIndex(MarkerRepository markerRepository) {
+        this.markerRepository = markerRepository;
+    }
+
+    // Built before the startup jobs that change marker text, which re-index what they change.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuild() {
+        Map<Long, Document> rebuilt = new HashMap<>();
+        long afterId = 0;
+        List<MarkerRow> chunk;
+        do {
+            chunk = markerRepository.findRowsAfter(afterId, PageRequest.ofSize(REBUILD_CHUNK_SIZE));
+            for (MarkerRow row : chunk) {
+                rebuilt.put(row.id(), toDocument(row));
+                afterId = row.id();
+            }
+        } while (chunk.size() == REBUILD_CHUNK_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            rebuilt.forEach(this::index);
+            logger.info("Search index built with {} markers and {} trigrams", documents.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarkerChanged(MarkerChangedEvent event) {
+        long markerId = event.marker().id();
+        if (event.type() == MarkerChangedEvent.ChangeType.DELETED) {
+            remove(markerId);
+            return;
+        }
+        // The event only carries the location, so the searchable text is read back once the write has committed.
+        markerRepository.findRowsByIdIn(List.of(markerId)).stream()
+                .findFirst()
+                .ifPresentOrElse(this::put, () -> remove(markerId));
+    }
+
+    /**
+     * Reads the markers back and indexes them again, for changes to their text that publish no MarkerChangedEvent.
+     * Call it once the changes have committed.
+     */
+    public void reindex(Collection<Long> markerIds) {
+        for (List<Long> chunk : Iterables.partition(markerIds, REBUILD_CHUNK_SIZE)) {
+            Set<Long> missing = new HashSet<>(chunk);
+            for (MarkerRow row : markerRepository.findRowsByIdIn(chunk)) {
+                put(row);
+                missing.remove(row.id());
+            }
+            missing.forEach(this::remove);
+        }
+    }
+
+    public void reindexOwner(long ownerId) {
+        reindex(markerRepository.findIdsByOwnerId(ownerId));
+    }
+
+    public void put(MarkerRow row) {
+        Document document = toDocument(row);
+        lock.writeLock().lock();
+        try {
+            unindex(row.id());
+            index(row.id(), document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long markerId) {
+        lock.writeLock().lock();
+        try {
+            unindex(markerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the matching markers, best match first. An empty query matches every marker, newest first.
+     */
+    public List<Long> search(String query, Integer year, Predicate<MarkerLocation> filter) {
+        List<Set<String>> tokens = tokenize(query).stream().map(MarkerSearchIndex::trigrams).toList();
+        lock.readLock().lock();
+        try {
+            if (tokens.isEmpty()) {
+                return documents.values().stream()
+                        .filter(document -> matches(document, year, filter))
+                        .sorted(Comparator.comparing((Document document) -> document.dt() != null ? document.dt() : 0L)
+                                .thenComparing(document -> document.location().id())
+                                .reversed())
+                        .map(document -> document.location().id())
+                        .toList();
+            }
+
+            Set<Long> candidates = null;
+            for (Set<String> token : tokens) {
+                Set<Long> tokenCandidates = candidatesFor(token);
+                if (candidates != null) {
+                    tokenCandidates.retainAll(candidates);
+                }
+                candidates = tokenCandidates;
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            Map<Long, Double> scores = new HashMap<>();
+            for (Long id : candidates) {
+                Document document = documents.get(id);
+                if (matches(document, year, filter)) {
+                    double score = score(document, tokens);
+                    if (score > 0) {
+                        scores.put(id, score);
+                    }
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue()
+                            .thenComparing(Map.Entry.comparingByKey())
+                            .reversed())
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<Long> candidatesFor(Set<String> token) {
+        // A document can only reach the similarity threshold in some field if it shares that many trigrams overall.
+        int required = (int) Math.ceil(token.size() * MIN_TOKEN_SIMILARITY);
+        Map<Long, Integer> hits = new HashMap<>();
+        for (String trigram : token) {
+            for (Long id : postings.getOrDefault(trigram, Set.of())) {
+                hits.merge(id, 1, Integer::sum);
+            }
+        }
+        Set<Long> result = new HashSet<>();
+        hits.forEach((id, count) -> {
+            if (count >= required) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    private static boolean matches(Document document, Integer year, Predicate<MarkerLocation> filter) {
+        return (year == null || year.equals(document.year())) && filter.test(document.location());
+    }
+
+    private static double score(Document document, List<Set<String>> tokens) {
+        double total = 0;
+        for (Set<String> token : tokens) {
+            double tokenScore = 0;
+            for (Field field : Field.values()) {
+                double similarity = similarity(token, document.fields().get(field.ordinal()));
+                if (similarity >= MIN_TOKEN_SIMILARITY) {
+                    tokenScore += field.weight * similarity;
+                }
+            }
+            if (tokenScore == 0) {
+                return 0;
+            }
+            total += tokenScore;
+        }
+        return total;
+    }
+
+    private static double similarity(Set<String> token, Set<String> field) {
+        if (field.isEmpty()) {
+            return 0;
+        }
+        int shared = 0;
+        for (String trigram : token) {
+            if (field.contains(trigram)) {
+                shared++;
+            }
+        }
+        return (double) shared / token.size();
+    }
+
+    private void index(long id, Document document) {
+        documents.put(id, document);
+        for (Set<String> field : document.fields()) {
+            for (String trigram : field) {
+                postings.computeIfAbsent(trigram, key -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    private void unindex(long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (Set<String> field : previous.fields()) {
+            for (String trigram : field) {
+                Set<Long> ids = postings.get(trigram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    private static Document toDocument(MarkerRow row) {
+        List<Set<String>> fields = List.of(
+                fieldTrigrams(row.title()),
+                fieldTrigrams(row.description()),
+                fieldTrigrams(row.category()),
+                fieldTrigrams(row.ownerName()),
+                fieldTrigrams(row.location()));
+        Integer year = row.dt() != null ? Instant.ofEpochSecond(row.dt()).atZone(ZoneOffset.UTC).getYear() : null;
+        MarkerLocation location = new MarkerLocation(row.id(), row.ownerId(), row.latitude(), row.longitude(), row.isPublic());
+        return new Document(location, row.dt(), year, fields);
+    }
+
+    private static Set<String> fieldTrigrams(String text) {
+        Set<String> result = new HashSet<>();
+        for (String token : tokenize(text)) {
+            result.addAll(trigrams(token));
+        }
+        return result;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(TOKEN_SEPARATOR.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    static Set<String> trigrams(String token) {
+        // Padded like pg_trgm so that word starts weigh more and one- or two-letter tokens still produce trigrams.
+        String padded = "  " + token + " ";
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+}
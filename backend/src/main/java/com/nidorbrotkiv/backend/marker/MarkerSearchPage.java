@@ -0,0 +1,6 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.List;
+
+public record MarkerSearchPage(List<MarkerView> markers, long total, int page, int size) {
+}
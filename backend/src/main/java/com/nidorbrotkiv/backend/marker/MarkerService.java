@@ -1,88 +1,310 @@
 package com.nidorbrotkiv.backend.marker;
 
-import com.nidorbrotkiv.backend.bucket.GoogleCloudService;
-import com.nidorbrotkiv.backend.user.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.nidorbrotkiv.backend.bucket.BlobDeletionService;
+import com.nidorbrotkiv.backend.bucket.BlobStore;
+import com.nidorbrotkiv.backend.bucket.BucketObject;
+import com.nidorbrotkiv.backend.bucket.DirectUpload;
+import com.nidorbrotkiv.backend.bucket.StoredBlobService;
+import com.nidorbrotkiv.backend.feed.FeedService;
+import com.nidorbrotkiv.backend.follow.FollowGraph;
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import com.nidorbrotkiv.backend.user.CachedUser;
+import com.nidorbrotkiv.backend.user.UserCache;
 import com.nidorbrotkiv.backend.user.UserRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import static com.nidorbrotkiv.backend.marker.StringSanitizer.sanitizeAndCheckLength;
 
 @Service
 public class MarkerService {
-    private final static String BUCKET_NAME = "geo-diary-images";
+    final static String BUCKET_NAME = "geo-diary-images";
+    private static final int STREAM_CHUNK_SIZE = 100;
+    private static final int IMAGE_QUERY_CHUNK_SIZE = 500;
+    private static final int MAX_IMAGES_PER_MARKER = 4;
     private final MarkerRepository markerRepository;
     private final UserRepository userRepository;
     private final ImageRepository imageRepository;
-    private final GoogleCloudService googleCloudService;
+    private final BlobStore blobStore;
+    private final ImageVariantService imageVariantService;
+    private final BlobDeletionService blobDeletionService;
+    private final StoredBlobService storedBlobService;
+    private final MarkerSpatialIndex spatialIndex;
+    private final MarkerSearchIndex searchIndex;
+    private final MarkerClusterIndex clusterIndex;
+    private final FollowGraph followGraph;
+    private final FeedService feedService;
+    private final UserCache userCache;
+    private final MarkerCache markerCache;
+    private final MarkerChangeLog changeLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Duration directUploadValidity;
+    private final long maxDirectUploadBytes;
     private static final Logger logger = LoggerFactory.getLogger(MarkerService.class);
 
     @Autowired
-    public MarkerService(MarkerRepository markerRepository, UserRepository userRepository, ImageRepository imageRepository, GoogleCloudService googleCloudService) {
+    public MarkerService(MarkerRepository markerRepository, UserRepository userRepository, ImageRepository imageRepository,
+                         BlobStore blobStore, ImageVariantService imageVariantService,
+                         BlobDeletionService blobDeletionService, StoredBlobService storedBlobService,
+                         MarkerSpatialIndex spatialIndex, MarkerSearchIndex searchIndex, MarkerClusterIndex clusterIndex,
+                         FollowGraph followGraph, FeedService feedService, UserCache userCache,
+                         MarkerCache markerCache, MarkerChangeLog changeLog,
+                         ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                         @Value("${images.direct-upload.validity-seconds:600}") long directUploadValiditySeconds,
+                         @Value("${images.direct-upload.max-bytes:20971520}") long maxDirectUploadBytes) {
         this.markerRepository = markerRepository;
         this.userRepository = userRepository;
         this.imageRepository = imageRepository;
-        this.googleCloudService = googleCloudService;
+        this.blobStore = blobStore;
+        this.imageVariantService = imageVariantService;
+        this.blobDeletionService = blobDeletionService;
+        this.storedBlobService = storedBlobService;
+        this.spatialIndex = spatialIndex;
+        this.searchIndex = searchIndex;
+        this.clusterIndex = clusterIndex;
+        this.followGraph = followGraph;
+        this.feedService = feedService;
+        this.userCache = userCache;
+        this.markerCache = markerCache;
+        this.changeLog = changeLog;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.directUploadValidity = Duration.ofSeconds(directUploadValiditySeconds);
+        this.maxDirectUploadBytes = maxDirectUploadBytes;
     }
 
-    public List<Marker> getMarkers(String email) {
+    public List<MarkerView> getMarkers(String email) {
         logger.info("Fetching markers for user with email: {}", email);
-        User user = userRepository.findByEmail(email)
+        CachedUser user = userCache.findByEmail(email)
                 .orElseThrow(() -> {
                     logger.error("User not found with email: {}", email);
                     return new NoSuchElementException("User not found");
                 });
 
-        List<Marker> ownedMarkers = markerRepository.findByOwnerEmail(email);
-        List<Marker> followedUsersMarkers = getFollowedUsersMarkers(user);
+        List<MarkerView> markers = toViews(markerRepository.findFeedRowsByUserId(user.id()));
 
-        Set<Marker> allMarkers = new HashSet<>(ownedMarkers);
-        allMarkers.addAll(followedUsersMarkers);
-
-        if (allMarkers.isEmpty()) {
+        if (markers.isEmpty()) {
             logger.warn("No markers found for user with email: {}", email);
             throw new NoSuchElementException("No markers for this user");
         }
-        return new ArrayList<>(allMarkers);
+        return markers;
+    }
+
+    public long getMarkerFeedVersion(String email) {
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+        return changeLog.feedVersion(user.id());
     }
 
-    private List<Marker> getFollowedUsersMarkers(User user) {
-        List<Marker> followedUsersMarkers = new ArrayList<>();
-        for (User followedUser : user.getFollowing()) {
-            followedUsersMarkers.addAll(
-                    markerRepository.findByOwnerEmail(followedUser.getEmail()).stream()
-                            .filter(Marker::getIsPublic)
-                            .toList()
-            );
+    /**
+     * Returns what changed in the user's feed after {@code since}. The version is read before the changes, so a
+     * change that commits in between is sent again next time rather than lost.
+     */
+    public MarkerChanges getMarkerChanges(String email, long since) {
+        logger.info("Fetching marker changes since version {} for user with email: {}", since, email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+
+        long version = changeLog.feedVersion(user.id());
+        if (changeLog.needsReset(user.id(), since)) {
+            return MarkerChanges.reset(version);
         }
-        return followedUsersMarkers;
+        List<Long> removedMarkerIds = changeLog.removedSince(user.id(), since);
+        List<MarkerView> markers = toViews(markerRepository.findFeedRowsChangedSince(user.id(), since));
+        return new MarkerChanges(version, false, markers, removedMarkerIds);
     }
 
     @Transactional
-    public long addMarker(String email, Marker marker) {
+    public void streamMarkers(String email, OutputStream outputStream) throws IOException {
+        logger.info("Streaming markers for user with email: {}", email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        List<MarkerRow> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        int written = 0;
+        try (Stream<MarkerRow> rows = markerRepository.streamFeedRowsByUserId(user.id())) {
+            Iterator<MarkerRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                    for (MarkerView marker : toViews(chunk)) {
+                        writer.writeValue(outputStream, marker);
+                        outputStream.write('\n');
+                    }
+                    written += chunk.size();
+                    chunk.clear();
+                    outputStream.flush();
+                }
+            }
+        }
+        logger.info("Streamed {} markers for user with email: {}", written, email);
+    }
+
+    public List<MarkerView> getMarkersInBoundingBox(String email, BoundingBox bbox) {
+        logger.info("Fetching markers within {} for user with email: {}", bbox, email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+
+        List<Long> markerIds = spatialIndex.findWithin(bbox, visibleTo(user))
+                .stream()
+                .map(MarkerLocation::id)
+                .toList();
+        return markerIds.isEmpty() ? List.of() : toViews(markerCache.getRows(markerIds));
+    }
+
+    public List<NearbyMarker> getNearbyMarkers(String email, double latitude, double longitude, int k, double maxKm) {
+        logger.info("Fetching {} markers within {} km of {},{} for user with email: {}", k, maxKm, latitude, longitude, email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+
+        List<MarkerDistance> nearest = spatialIndex.findNearest(latitude, longitude, k, maxKm, visibleTo(user));
+        if (nearest.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, MarkerView> views = new HashMap<>();
+        toViews(markerCache.getRows(nearest.stream().map(distance -> distance.location().id()).toList()))
+                .forEach(view -> views.put(view.id(), view));
+        return nearest.stream()
+                .filter(distance -> views.containsKey(distance.location().id()))
+                .map(distance -> new NearbyMarker(views.get(distance.location().id()), distance.distanceKm()))
+                .toList();
+    }
+
+    public List<MarkerCluster> getMarkerClusters(String email, int zoom, BoundingBox bbox) {
+        logger.info("Fetching marker clusters at zoom {} within {} for user with email: {}", zoom, bbox, email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+        return clusterIndex.findClusters(zoom, bbox, user.id(), followGraph.following(user.id()));
+    }
+
+    public MarkerSearchPage searchMarkers(String email, String query, Integer year, int page, int size) {
+        logger.info("Searching markers for user with email: {}", email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+
+        List<Long> ranked = searchIndex.search(query, year, visibleTo(user));
+        long from = (long) page * size;
+        if (from >= ranked.size()) {
+            return new MarkerSearchPage(List.of(), ranked.size(), page, size);
+        }
+        List<Long> pageIds = ranked.subList((int) from, (int) Math.min(ranked.size(), from + size));
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < pageIds.size(); i++) {
+            rank.put(pageIds.get(i), i);
+        }
+        List<MarkerView> markers = new ArrayList<>(toViews(markerCache.getRows(pageIds)));
+        markers.sort(Comparator.comparing(marker -> rank.get(marker.id())));
+        return new MarkerSearchPage(markers, ranked.size(), page, size);
+    }
+
+    public MarkerPage getMarkerPage(String email, MarkerSort sort, boolean ascending, String cursor, int limit) {
+        logger.info("Fetching {} markers sorted by {} for user with email: {}", limit, sort, email);
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User not found with email: {}", email);
+                    return new NoSuchElementException("User not found");
+                });
+
+        MarkerCursor after = cursor != null ? MarkerCursor.decode(cursor) : null;
+        if (after != null && (after.sort() != sort || after.ascending() != ascending)) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+
+        List<MarkerRow> rows = markerRepository.findFeedPage(user.id(), sort, ascending, after, limit + 1);
+        if (rows.size() <= limit) {
+            return new MarkerPage(toViews(rows), null);
+        }
+        List<MarkerView> page = toViews(rows.subList(0, limit));
+        return new MarkerPage(page, MarkerCursor.after(sort, ascending, page.get(limit - 1)).encode());
+    }
+
+    private Predicate<MarkerLocation> visibleTo(CachedUser user) {
+        long userId = user.id();
+        return location -> location.isVisibleTo(userId, ownerId -> followGraph.follows(userId, ownerId));
+    }
+
+    public Optional<MarkerView> findMarkerView(long markerId) {
+        return toViews(markerCache.getRows(List.of(markerId))).stream().findFirst();
+    }
+
+    private List<MarkerView> toViews(List<MarkerRow> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<ImageRow> images = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += IMAGE_QUERY_CHUNK_SIZE) {
+            List<Long> markerIds = rows.subList(from, Math.min(rows.size(), from + IMAGE_QUERY_CHUNK_SIZE)).stream()
+                    .map(MarkerRow::id)
+                    .toList();
+            images.addAll(imageRepository.findRowsByMarkerIdIn(markerIds));
+        }
+        return MarkerView.assemble(rows, images);
+    }
+
+    @Transactional
+    public MarkerView addMarker(String email, Marker marker) {
         logger.info("Adding marker for user with email: {}", email);
-        User user = userRepository.findByEmail(email)
+        CachedUser user = userCache.findByEmail(email)
                 .orElseThrow(() -> {
                     logger.error("User with email {} does not exist", email);
                     return new IllegalArgumentException("User with email " + email + " does not exist");
                 });
-        marker.setUser(user);
+        marker.setUser(userRepository.getReferenceById(user.id()));
         markerRepository.save(marker);
+        feedService.markerAdded(user.id(), marker.getId());
+        eventPublisher.publishEvent(MarkerChangedEvent.created(marker));
         logger.info("Marker added with ID: {}", marker.getId());
-        return marker.getId();
+        return MarkerView.created(marker, user);
     }
 
     @Transactional
     public void deleteMarker(String email, long markerId) {
         logger.info("Deleting marker with ID: {} for user with email: {}", markerId, email);
-        User user = userRepository.findByEmail(email)
+        CachedUser user = userCache.findByEmail(email)
                 .orElseThrow(() -> {
                     logger.error("User with email {} does not exist", email);
                     return new IllegalArgumentException("User with email " + email + " does not exist");
@@ -94,11 +316,14 @@ public class MarkerService {
                     return new IllegalArgumentException("Marker with id " + markerId + " does not exist");
                 });
 
-        if (marker.getUser().equals(user)) {
-            marker.getImages().forEach(image -> deleteImage(image.getUrl()));
-            markerRepository.deleteById(markerId);
+        if (marker.getUser().getId().equals(user.id())) {
+            releaseImages(marker.getImages());
+            feedService.markerRemoved(user.id(), markerId);
+            markerRepository.delete(marker);
+            markerCache.invalidate(markerId);
+            eventPublisher.publishEvent(MarkerChangedEvent.deleted(marker));
             logger.info("Marker with ID: {} deleted successfully", markerId);
-        } else if (marker.getViewers().removeIf(viewer -> viewer.getUser().equals(user))) {
+        } else if (marker.getViewers().removeIf(viewer -> viewer.getUser().getId().equals(user.id()))) {
             markerRepository.save(marker);
             logger.info("Viewer removed for marker with ID: {}", markerId);
         } else {
@@ -107,82 +332,203 @@ public class MarkerService {
         }
     }
 
-    public String addImage(Long markerId, MultipartFile imageFile) throws IOException {
+    public String addImage(String email, Long markerId, MultipartFile imageFile) throws IOException {
         logger.info("Adding image to marker with ID: {}", markerId);
-        Marker marker = markerRepository.findById(markerId)
-                .orElseThrow(() -> {
-                    logger.error("Marker with ID {} does not exist.", markerId);
-                    return new NoSuchElementException("Marker with ID " + markerId + " does not exist.");
+        Marker marker = getOwnedMarker(email, markerId);
+        checkImageLimit(marker);
+
+        ImageContent content = readImageContent(imageFile);
+        boolean upload = storedBlobService.addReference(BUCKET_NAME, content.name(), content.type().getContentType());
+        Image newImage = new Image();
+        try {
+            if (upload) {
+                try (InputStream input = imageFile.getInputStream()) {
+                    newImage.setUrl(blobStore.uploadImageToBucket(BUCKET_NAME, input, content.name(),
+                            content.type().getContentType()));
+                }
+                storedBlobService.markUploaded(BUCKET_NAME, content.name());
+            } else {
+                newImage.setUrl(blobStore.publicUrl(BUCKET_NAME, content.name()));
+                imageRepository.findFirstByUrlAndMediumUrlIsNotNull(newImage.getUrl()).ifPresent(existing -> {
+                    newImage.setThumbnailUrl(existing.getThumbnailUrl());
+                    newImage.setMediumUrl(existing.getMediumUrl());
                 });
+            }
+            newImage.setMarker(marker);
+            imageRepository.save(newImage);
+            eventPublisher.publishEvent(MarkerChangedEvent.updated(marker));
+        } catch (IOException | RuntimeException e) {
+            if (storedBlobService.releaseReference(BUCKET_NAME, content.name())) {
+                blobDeletionService.deleteUrlsAfterCommit(List.of(blobStore.publicUrl(BUCKET_NAME, content.name())));
+            }
+            throw e;
+        }
+        if (upload) {
+            imageVariantService.scheduleVariants(newImage.getUrl(), BUCKET_NAME, content.name());
+        }
+        logger.info("Image added to marker with ID: {}", markerId);
+        return newImage.getUrl();
+    }
 
-        validateImageFile(imageFile);
+    /**
+     * Authorizes the client to upload one image for the marker straight to the bucket. The upload only becomes an
+     * image of the marker once {@link #finalizeDirectUpload} has checked it.
+     */
+    public DirectUpload createDirectUpload(String email, Long markerId, String contentType) {
+        logger.info("Creating direct upload for marker with ID: {}", markerId);
+        checkImageLimit(getOwnedMarker(email, markerId));
+        ImageType imageType = ImageType.fromContentType(contentType);
+        return blobStore.createDirectUpload(BUCKET_NAME, UUID.randomUUID().toString(), imageType.getContentType(),
+                maxDirectUploadBytes, directUploadValidity);
+    }
 
-        if (marker.getImages().size() >= 4) {
-            logger.error("Marker with ID {} already has 4 images.", markerId);
-            throw new IllegalStateException("Marker already has 4 images.");
+    /**
+     * Attaches a directly uploaded object to the marker after checking its size and magic bytes, reading only the
+     * header from the bucket. The checks call the bucket before any transaction is opened; rejected uploads are
+     * deleted.
+     */
+    public String finalizeDirectUpload(String email, Long markerId, String imageName) {
+        logger.info("Finalizing direct upload {} for marker with ID: {}", imageName, markerId);
+        Marker marker = getOwnedMarker(email, markerId);
+        checkImageLimit(marker);
+        try {
+            // Only names handed out by createDirectUpload, never content-addressed objects of other users.
+            UUID.fromString(imageName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid upload name: " + imageName);
+        }
+        BucketObject object = blobStore.findImage(BUCKET_NAME, imageName)
+                .orElseThrow(() -> new NoSuchElementException("No upload with name " + imageName));
+        String imageUrl = blobStore.publicUrl(BUCKET_NAME, imageName);
+        ImageType imageType;
+        try {
+            if (object.size() > maxDirectUploadBytes) {
+                throw new IllegalArgumentException("The image is larger than " + maxDirectUploadBytes + " bytes.");
+            }
+            imageType = ImageType.detect(blobStore.readImageHeader(BUCKET_NAME, imageName, ImageType.HEADER_LENGTH));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected direct upload {}: {}", imageName, e.getMessage());
+            blobDeletionService.deleteUrlsAfterCommit(List.of(imageUrl));
+            throw e;
+        }
+        if (!storedBlobService.addUploadedReference(BUCKET_NAME, imageName, imageType.getContentType())) {
+            storedBlobService.releaseReference(BUCKET_NAME, imageName);
+            throw new IllegalStateException("Upload " + imageName + " has already been finalized.");
         }
 
-        String imageUrl = storeImage(imageFile);
         Image newImage = new Image();
         newImage.setUrl(imageUrl);
         newImage.setMarker(marker);
-        imageRepository.save(newImage);
+        try {
+            imageRepository.save(newImage);
+            eventPublisher.publishEvent(MarkerChangedEvent.updated(marker));
+        } catch (RuntimeException e) {
+            if (storedBlobService.releaseReference(BUCKET_NAME, imageName)) {
+                blobDeletionService.deleteUrlsAfterCommit(List.of(imageUrl));
+            }
+            throw e;
+        }
+        imageVariantService.scheduleVariants(imageUrl, BUCKET_NAME, imageName);
         logger.info("Image added to marker with ID: {}", markerId);
-        return newImage.getUrl();
+        return imageUrl;
     }
 
-    private void validateImageFile(MultipartFile imageFile) {
-        String contentType = imageFile.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            logger.error("Invalid file type. The file is not an image.");
-            throw new IllegalArgumentException("The file is not an image.");
+    private void checkImageLimit(Marker marker) {
+        if (marker.getImages().size() >= MAX_IMAGES_PER_MARKER) {
+            logger.error("Marker with ID {} already has {} images.", marker.getId(), MAX_IMAGES_PER_MARKER);
+            throw new IllegalStateException("Marker already has " + MAX_IMAGES_PER_MARKER + " images.");
         }
     }
 
-    private String storeImage(MultipartFile imageFile) {
-        try {
-            String imageName = UUID.randomUUID() + "-" + imageFile.getOriginalFilename(); // Ensure unique name
-            byte[] bytes = imageFile.getBytes();
-            logger.info("Storing image with name: {}", imageName);
-            return googleCloudService.uploadImageToBucket(BUCKET_NAME, bytes, imageName);
-        } catch (IOException e) {
-            logger.error("Failed to store file", e);
-            throw new RuntimeException("Failed to store file", e);
+    /**
+     * Releases the stored content of the given images and queues the objects (with their variants) that are no
+     * longer referenced for deletion after commit.
+     */
+    @Transactional
+    public void releaseImages(Collection<Image> images) {
+        List<String> unreferencedUrls = new ArrayList<>();
+        // Releasing in a fixed order keeps concurrent deletions from locking the same rows in opposite orders.
+        images.stream()
+                .sorted(Comparator.comparing(Image::getUrl))
+                .forEach(image -> {
+                    if (storedBlobService.releaseReference(BUCKET_NAME, imageNameOf(image.getUrl()))) {
+                        unreferencedUrls.addAll(image.storedUrls());
+                    }
+                });
+        blobDeletionService.deleteUrlsAfterCommit(unreferencedUrls);
+    }
+
+    // Names the object after the SHA-256 of its content, computed in a first pass over the uploaded temp file.
+    private ImageContent readImageContent(MultipartFile imageFile) throws IOException {
+        try (HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), imageFile.getInputStream());
+             PushbackInputStream input = new PushbackInputStream(hashing, ImageType.HEADER_LENGTH)) {
+            ImageType imageType = ImageType.detect(input);
+            input.transferTo(OutputStream.nullOutputStream());
+            return new ImageContent(hashing.hash().toString(), imageType);
         }
     }
 
+    private record ImageContent(String name, ImageType type) {
+    }
+
+    @Transactional
     public void updateMarkerDescription(long markerId, String description) {
         logger.info("Updating description for marker with ID: {}", markerId);
-        Marker marker = getMarkerById(markerId);
-        marker.setDescription(sanitizeAndCheckLength(description, 500));
-        markerRepository.save(marker);
+        MarkerLocation marker = getMarkerLocation(markerId);
+        checkUpdated(markerRepository.updateDescription(markerId, sanitizeAndCheckLength(description, 500)), markerId);
+        markerCache.invalidate(markerId);
+        eventPublisher.publishEvent(MarkerChangedEvent.updated(marker));
         logger.info("Description updated for marker with ID: {}", markerId);
     }
 
+    @Transactional
     public void updateMarkerCategory(long markerId, String category) {
         logger.info("Updating category for marker with ID: {}", markerId);
-        Marker marker = getMarkerById(markerId);
-        marker.setCategory(sanitizeAndCheckLength(category, 50));
-        markerRepository.save(marker);
+        MarkerLocation marker = getMarkerLocation(markerId);
+        checkUpdated(markerRepository.updateCategory(markerId, sanitizeAndCheckLength(category, 50)), markerId);
+        markerCache.invalidate(markerId);
+        eventPublisher.publishEvent(MarkerChangedEvent.updated(marker));
         logger.info("Category updated for marker with ID: {}", markerId);
     }
 
+    @Transactional
     public void updateMarkerTitle(long markerId, String title) {
         logger.info("Updating title for marker with ID: {}", markerId);
-        Marker marker = getMarkerById(markerId);
-        marker.setTitle(sanitizeAndCheckLength(title, 100));
-        markerRepository.save(marker);
+        MarkerLocation marker = getMarkerLocation(markerId);
+        checkUpdated(markerRepository.updateTitle(markerId, sanitizeAndCheckLength(title, 100)), markerId);
+        markerCache.invalidate(markerId);
+        eventPublisher.publishEvent(MarkerChangedEvent.updated(marker));
         logger.info("Title updated for marker with ID: {}", markerId);
     }
 
+    @Transactional
     public void updateMarkerIsPublic(long markerId, Boolean isPublic) {
         logger.info("Updating public status for marker with ID: {}", markerId);
-        Marker marker = getMarkerById(markerId);
-        marker.setIsPublic(isPublic);
-        markerRepository.save(marker);
+        MarkerLocation marker = getMarkerLocation(markerId);
+        checkUpdated(markerRepository.updateIsPublic(markerId, isPublic), markerId);
+        markerCache.invalidate(markerId);
+        feedService.visibilityChanged(marker.ownerId(), markerId, Boolean.TRUE.equals(isPublic));
+        eventPublisher.publishEvent(MarkerChangedEvent.updated(
+                new MarkerLocation(markerId, marker.ownerId(), marker.latitude(), marker.longitude(), isPublic)));
         logger.info("Public status updated for marker with ID: {}", markerId);
     }
 
+    private MarkerLocation getMarkerLocation(long markerId) {
+        return markerCache.getRow(markerId)
+                .map(MarkerLocation::of)
+                .orElseThrow(() -> {
+                    logger.error("Marker with id {} does not exist", markerId);
+                    return new IllegalArgumentException("Marker with id " + markerId + " does not exist");
+                });
+    }
+
+    private void checkUpdated(int updatedRows, long markerId) {
+        if (updatedRows == 0) {
+            logger.error("Marker with id {} does not exist", markerId);
+            throw new IllegalArgumentException("Marker with id " + markerId + " does not exist");
+        }
+    }
+
     private Marker getMarkerById(long markerId) {
         return markerRepository.findById(markerId)
                 .orElseThrow(() -> {
@@ -191,13 +537,32 @@ public class MarkerService {
                 });
     }
 
-    public void deleteImage(String imageUrl) {
+    private Marker getOwnedMarker(String email, long markerId) {
+        CachedUser user = userCache.findByEmail(email)
+                .orElseThrow(() -> {
+                    logger.error("User with email {} does not exist", email);
+                    return new IllegalArgumentException("User with email " + email + " does not exist");
+                });
+        Marker marker = getMarkerById(markerId);
+        if (!marker.getUser().getId().equals(user.id())) {
+            logger.error("User with email {} does not own the marker with ID {}", email, markerId);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the owner can change the images of a marker");
+        }
+        return marker;
+    }
+
+    @Transactional
+    public void deleteImage(String email, String imageUrl, long markerId) {
         logger.info("Deleting image with URL: {}", imageUrl);
         imageUrl = sanitizeAndCheckLength(imageUrl,1000);
-        Optional<Image> image = imageRepository.findByUrl(imageUrl);
+        getOwnedMarker(email, markerId);
+        // The same content can be attached to several markers, so the marker picks which attachment to remove.
+        Optional<Image> image = imageRepository.findFirstByMarkerIdAndUrl(markerId, imageUrl);
         if (image.isPresent()) {
-            deleteImageFromBucket(imageUrl);
+            releaseImages(List.of(image.get()));
+            image.get().getMarker().getImages().remove(image.get());
             imageRepository.delete(image.get());
+            eventPublisher.publishEvent(MarkerChangedEvent.updated(image.get().getMarker()));
             logger.info("Image with URL: {} deleted successfully", imageUrl);
         } else {
             logger.error("Image not found with URL: {}", imageUrl);
@@ -205,9 +570,7 @@ public class MarkerService {
         }
     }
 
-    private void deleteImageFromBucket(String imageUrl) {
-        String imageName = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
-        logger.info("Deleting image from bucket with name: {}", imageName);
-        googleCloudService.deleteImageFromBucket(BUCKET_NAME, imageName);
+    private static String imageNameOf(String imageUrl) {
+        return imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
     }
 }
@@ -0,0 +1,55 @@
+package com.nidorbrotkiv.backend.marker;
+
+import java.util.Locale;
+
+/**
+ * The orders a marker page can be sorted in. Sort keys are the raw columns, so idx_weather_info_dt and
+ * idx_marker_title_id can return the rows in order; missing keys sort last ascending and first descending, like
+ * they do in those indexes.
+ */
+public enum MarkerSort {
+    DATE("w.dt"),
+    TITLE("m.title"),
+    ID(null);
+
+    private final String sortColumn;
+
+    MarkerSort(String sortColumn) {
+        this.sortColumn = sortColumn;
+    }
+
+    String getSortColumn() {
+        return sortColumn;
+    }
+
+    boolean hasSortKey() {
+        return sortColumn != null;
+    }
+
+    Object sortKeyOf(MarkerView marker) {
+        return switch (this) {
+            case DATE -> marker.weatherInfo() != null ? marker.weatherInfo().dt() : null;
+            case TITLE -> marker.title();
+            case ID -> null;
+        };
+    }
+
+    Object parseSortKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (this) {
+            case DATE -> Long.parseLong(value);
+            case TITLE -> value;
+            case ID -> null;
+        };
+    }
+
+    public static MarkerSort fromString(String value) {
+        try {
+            return MarkerSort.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import com.nidorbrotkiv.backend.geo.GreatCircle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory uniform grid over marker coordinates. Viewport queries only visit the grid cells overlapping the
+ * bounding box, so their cost depends on the number of markers in view rather than on the total marker count.
+ */
+@Component
+public class MarkerSpatialIndex {
+    private static final double CELL_SIZE_DEGREES = 0.25;
+    private static final int ROWS = (int) Math.ceil(180 / CELL_SIZE_DEGREES);
+    private static final int COLUMNS = (int) Math.ceil(360 / CELL_SIZE_DEGREES);
+
+    private final MarkerRepository markerRepository;
+    private final Map<Integer, Map<Long, MarkerLocation>> cells = new ConcurrentHashMap<>();
+    private final Map<Long, MarkerLocation> locations = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(MarkerSpatialIndex.class);
+
+    public MarkerSpatialIndex(MarkerRepository markerRepository) {
+        this.markerRepository = markerRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<MarkerLocation> all = markerRepository.findAllLocations();
+        cells.clear();
+        locations.clear();
+        all.forEach(this::put);
+        logger.info("Spatial index built with {} markers in {} cells", locations.size(), cells.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMarkerChanged(MarkerChangedEvent event) {
+        if (event.type() == MarkerChangedEvent.ChangeType.DELETED) {
+            remove(event.marker().id());
+        } else {
+            put(event.marker());
+        }
+    }
+
+    public void put(MarkerLocation location) {
+        remove(location.id());
+        if (!location.hasCoordinates()) {
+            return;
+        }
+        locations.put(location.id(), location);
+        cells.compute(cellKey(location.latitude(), location.longitude()), (key, cell) -> {
+            Map<Long, MarkerLocation> target = cell == null ? new ConcurrentHashMap<>() : cell;
+            target.put(location.id(), location);
+            return target;
+        });
+    }
+
+    public void remove(long markerId) {
+        MarkerLocation previous = locations.remove(markerId);
+        if (previous == null) {
+            return;
+        }
+        cells.computeIfPresent(cellKey(previous.latitude(), previous.longitude()), (key, cell) -> {
+            cell.remove(markerId);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    public List<MarkerLocation> findWithin(BoundingBox bbox, Predicate<MarkerLocation> filter) {
+        List<MarkerLocation> result = new ArrayList<>();
+        int minRow = row(bbox.minLatitude());
+        int maxRow = row(bbox.maxLatitude());
+        int minColumn = column(bbox.minLongitude());
+        int maxColumn = column(bbox.maxLongitude());
+        int columnCount = bbox.crossesAntimeridian()
+                ? (COLUMNS - minColumn) + maxColumn + 1
+                : maxColumn - minColumn + 1;
+        long coveredCells = (long) (maxRow - minRow + 1) * columnCount;
+
+        if (coveredCells > cells.size()) {
+            // Zoomed far out: walking the occupied cells is cheaper than walking the covered ones.
+            cells.values().forEach(cell -> collect(cell, bbox, filter, result));
+            return result;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                int column = (minColumn + i) % COLUMNS;
+                Map<Long, MarkerLocation> cell = cells.get(row * COLUMNS + column);
+                if (cell != null) {
+                    collect(cell, bbox, filter, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns up to {@code k} markers passing the filter within {@code maxKm} of the given point, nearest first.
+     * Cells are visited in square rings around the point, and the search stops as soon as no unvisited cell can
+     * hold a marker closer than the current k-th nearest one.
+     */
+    public List<MarkerDistance> findNearest(double latitude, double longitude, int k, double maxKm,
+                                            Predicate<MarkerLocation> filter) {
+        PriorityQueue<MarkerDistance> nearest = new PriorityQueue<>(
+                Comparator.comparingDouble(MarkerDistance::distanceKm).reversed());
+        int centerRow = row(latitude);
+        int centerColumn = column(longitude);
+
+        for (int ring = 0; ; ring++) {
+            double bound = ring == 0 ? 0 : unvisitedDistanceBound(latitude, longitude, centerRow, centerColumn, ring - 1);
+            if (bound > maxKm || (nearest.size() == k && bound >= nearest.peek().distanceKm())) {
+                break;
+            }
+            if (2 * ring + 1 >= COLUMNS || 8L * ring > cells.size()) {
+                // The ring is larger than the occupied part of the grid, so finish by walking the occupied cells.
+                int visited = ring - 1;
+                cells.forEach((key, cell) -> {
+                    if (!isWithinRing(key / COLUMNS, key % COLUMNS, centerRow, centerColumn, visited)) {
+                        offerAll(cell, latitude, longitude, k, maxKm, filter, nearest);
+                    }
+                });
+                break;
+            }
+            for (int row = Math.max(0, centerRow - ring); row <= Math.min(ROWS - 1, centerRow + ring); row++) {
+                boolean edgeRow = Math.abs(row - centerRow) == ring;
+                for (int offset = -ring; offset <= ring; offset += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                    Map<Long, MarkerLocation> cell = cells.get(row * COLUMNS + Math.floorMod(centerColumn + offset, COLUMNS));
+                    if (cell != null) {
+                        offerAll(cell, latitude, longitude, k, maxKm, filter, nearest);
+                    }
+                }
+            }
+        }
+
+        List<MarkerDistance> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(MarkerDistance::distanceKm));
+        return result;
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    private void collect(Map<Long, MarkerLocation> cell, BoundingBox bbox, Predicate<MarkerLocation> filter,
+                         List<MarkerLocation> result) {
+        for (MarkerLocation location : cell.values()) {
+            if (bbox.contains(location.latitude(), location.longitude()) && filter.test(location)) {
+                result.add(location);
+            }
+        }
+    }
+
+    private static void offerAll(Map<Long, MarkerLocation> cell, double latitude, double longitude, int k, double maxKm,
+                                 Predicate<MarkerLocation> filter, PriorityQueue<MarkerDistance> nearest) {
+        for (MarkerLocation location : cell.values()) {
+            double distance = GreatCircle.distanceKm(latitude, longitude, location.latitude(), location.longitude());
+            if (distance > maxKm || (nearest.size() == k && distance >= nearest.peek().distanceKm())) {
+                continue;
+            }
+            if (filter.test(location)) {
+                nearest.add(new MarkerDistance(location, distance));
+                if (nearest.size() > k) {
+                    nearest.poll();
+                }
+            }
+        }
+    }
+
+    private static boolean isWithinRing(int row, int column, int centerRow, int centerColumn, int ring) {
+        int columnDistance = Math.abs(column - centerColumn);
+        return Math.abs(row - centerRow) <= ring && Math.min(columnDistance, COLUMNS - columnDistance) <= ring;
+    }
+
+    /**
+     * Lower bound in kilometres on the distance from the point to any cell outside the given ring.
+     */
+    private static double unvisitedDistanceBound(double latitude, double longitude, int centerRow, int centerColumn,
+                                                 int ring) {
+        double bound = Double.MAX_VALUE;
+        double kmPerDegree = GreatCircle.EARTH_RADIUS_KM * Math.PI / 180;
+        if (centerRow + ring + 1 < ROWS) {
+            bound = Math.min(bound, ((centerRow + ring + 1) * CELL_SIZE_DEGREES - 90 - latitude) * kmPerDegree);
+        }
+        if (centerRow - ring > 0) {
+            bound = Math.min(bound, (latitude - ((centerRow - ring) * CELL_SIZE_DEGREES - 90)) * kmPerDegree);
+        }
+        if (2 * ring + 1 < COLUMNS) {
+            double west = longitude - ((centerColumn - ring) * CELL_SIZE_DEGREES - 180);
+            double east = ((centerColumn + ring + 1) * CELL_SIZE_DEGREES - 180) - longitude;
+            double gap = Math.toRadians(Math.min(90, Math.min(west, east)));
+            // Distance to the nearest meridian beyond the gap, or over the pole to the far side of the globe.
+            double acrossMeridian = Math.asin(Math.cos(Math.toRadians(latitude)) * Math.sin(gap));
+            double overPole = Math.toRadians(90 - Math.abs(latitude));
+            bound = Math.min(bound, Math.min(acrossMeridian, overPole) * GreatCircle.EARTH_RADIUS_KM);
+        }
+        return bound;
+    }
+
+    private static int cellKey(double latitude, double longitude) {
+        return row(latitude) * COLUMNS + column(longitude);
+    }
+
+    private static int row(double latitude) {
+        return Math.min(ROWS - 1, Math.max(0, (int) Math.floor((latitude + 90) / CELL_SIZE_DEGREES)));
+    }
+
+    private static int column(double longitude) {
+        return Math.min(COLUMNS - 1, Math.max(0, (int) Math.floor((longitude + 180) / CELL_SIZE_DEGREES)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Records that a marker left the feeds of its owner's followers, because it was deleted or made private, so
+ * clients syncing changes know to drop it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "marker_tombstone", indexes = {
+        @Index(name = "idx_marker_tombstone_owner_version", columnList = "owner_id, change_version")
+})
+public class MarkerTombstone {
+    @Id
+    @Column(name = "marker_id")
+    private Long markerId;
+
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(name = "change_version")
+    private Long changeVersion;
+
+    private Instant removedAt;
+}
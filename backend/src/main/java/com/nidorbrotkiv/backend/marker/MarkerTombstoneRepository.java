@@ -0,0 +1,29 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface MarkerTombstoneRepository extends JpaRepository<MarkerTombstone, Long> {
+    // The owners whose markers can appear in the user's feed: the user and everyone they follow.
+    String FEED_OWNERS = "(t.ownerId = :userId OR t.ownerId IN " +
+            "(SELECT f.id FROM User u JOIN u.following f WHERE u.id = :userId))";
+
+    @Query("SELECT t.markerId FROM MarkerTombstone t WHERE " + FEED_OWNERS + " AND t.changeVersion > :since")
+    List<Long> findFeedMarkerIdsRemovedSince(long userId, long since);
+
+    @Query("SELECT MAX(t.changeVersion) FROM MarkerTombstone t WHERE " + FEED_OWNERS)
+    Long findMaxFeedChangeVersion(long userId);
+
+    @Query("SELECT MAX(t.changeVersion) FROM MarkerTombstone t WHERE t.removedAt < :before")
+    Long findMaxChangeVersionRemovedBefore(Instant before);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MarkerTombstone t WHERE t.changeVersion <= :version")
+    int deleteUpToVersion(long version);
+}
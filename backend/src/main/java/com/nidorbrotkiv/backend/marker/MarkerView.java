@@ -0,0 +1,58 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.user.CachedUser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read model returned by the marker feed endpoints. It carries only what the map and gallery render, so
+ * serializing it never touches the JPA entity graph.
+ */
+public record MarkerView(Long id, Double latitude, Double longitude, String title, String description,
+                         Boolean isPublic, String category, Owner user, List<ImageView> images, Weather weatherInfo) {
+
+    public record Owner(Long id, String name, String email, String profileImageUrl) {
+    }
+
+    public record ImageView(Long id, String url, String thumbnailUrl, String mediumUrl) {
+    }
+
+    public record Weather(Long id, Double temp, Long dt, String location, String icon, String country,
+                          String description) {
+    }
+
+    public static MarkerView of(MarkerRow row, List<ImageView> images) {
+        Weather weather = row.weatherInfoId() == null ? null : new Weather(row.weatherInfoId(), row.temp(), row.dt(),
+                row.location(), row.icon(), row.country(), row.weatherDescription());
+        return new MarkerView(row.id(), row.latitude(), row.longitude(), row.title(), row.description(),
+                row.isPublic(), row.category(),
+                new Owner(row.ownerId(), row.ownerName(), row.ownerEmail(), row.ownerProfileImageUrl()),
+                images, weather);
+    }
+
+    public static MarkerView created(Marker marker, CachedUser owner) {
+        WeatherInfo info = marker.getWeatherInfo();
+        Weather weather = info == null ? null : new Weather(info.getId(), info.getTemp(), info.getDt(),
+                info.getLocation(), info.getIcon(), info.getCountry(), info.getDescription());
+        return new MarkerView(marker.getId(), marker.getLatitude(), marker.getLongitude(), marker.getTitle(),
+                marker.getDescription(), marker.getIsPublic(), marker.getCategory(),
+                new Owner(owner.id(), owner.name(), owner.email(), owner.profileImageUrl()), List.of(), weather);
+    }
+
+    public static List<MarkerView> assemble(List<MarkerRow> rows, Collection<ImageRow> imageRows) {
+        Map<Long, List<ImageView>> imagesByMarker = new HashMap<>();
+        for (ImageRow image : imageRows) {
+            imagesByMarker.computeIfAbsent(image.markerId(), id -> new ArrayList<>())
+                    .add(new ImageView(image.id(), image.url(), image.thumbnailUrl(), image.mediumUrl()));
+        }
+        List<MarkerView> views = new ArrayList<>(rows.size());
+        for (MarkerRow row : rows) {
+            views.add(of(row, imagesByMarker.getOrDefault(row.id(), List.of())));
+        }
+        return views;
+    }
+}
@@ -4,10 +4,14 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.nidorbrotkiv.backend.user.User;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @NoArgsConstructor
+@EqualsAndHashCode(exclude = "marker")
+@ToString(exclude = "marker")
 @Entity
 @Table(name = "marker_viewer")
 public class MarkerViewer {
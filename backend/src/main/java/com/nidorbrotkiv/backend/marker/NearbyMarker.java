@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record NearbyMarker(MarkerView marker, double distanceKm) {
+}
@@ -0,0 +1,126 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.bucket.BlobDeletionService;
+import com.nidorbrotkiv.backend.bucket.BlobStore;
+import com.nidorbrotkiv.backend.bucket.BucketObject;
+import com.nidorbrotkiv.backend.bucket.StoredBlobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds bucket objects that no image row references by reading the bucket listing in chunks and looking up each
+ * chunk's URLs in the image table with one query, so memory stays bounded by the chunk size. Objects younger than
+ * the grace period are skipped because their row may not be committed yet. An orphan that still has a
+ * stored_blob entry leaked its reference in a failed upload; the entry is removed along with the object, so later
+ * uploads of the same content store it again instead of reusing the deleted object. Each run stops after
+ * maxBlobsPerRun objects and the next run continues from there.
+ */
+@Component
+public class OrphanedImageSweeper {
+    private final BlobStore blobStore;
+    private final ImageRepository imageRepository;
+    private final BlobDeletionService blobDeletionService;
+    private final StoredBlobService storedBlobService;
+    private final String urlPrefix;
+    private final boolean dryRun;
+    private final Duration gracePeriod;
+    private final int chunkSize;
+    private final long maxBlobsPerRun;
+    private String resumeAfter = "";
+    private static final Logger logger = LoggerFactory.getLogger(OrphanedImageSweeper.class);
+
+    public OrphanedImageSweeper(BlobStore blobStore, ImageRepository imageRepository,
+                                BlobDeletionService blobDeletionService, StoredBlobService storedBlobService,
+                                @Value("${images.sweeper.dry-run:true}") boolean dryRun,
+                                @Value("${images.sweeper.grace-period-hours:24}") long gracePeriodHours,
+                                @Value("${images.sweeper.chunk-size:500}") int chunkSize,
+                                @Value("${images.sweeper.max-blobs-per-run:100000}") long maxBlobsPerRun) {
+        this.blobStore = blobStore;
+        this.imageRepository = imageRepository;
+        this.blobDeletionService = blobDeletionService;
+        this.storedBlobService = storedBlobService;
+        this.urlPrefix = blobStore.publicUrl(MarkerService.BUCKET_NAME, "");
+        this.dryRun = dryRun;
+        this.gracePeriod = Duration.ofHours(gracePeriodHours);
+        this.chunkSize = chunkSize;
+        this.maxBlobsPerRun = maxBlobsPerRun;
+    }
+
+    @Scheduled(cron = "${images.sweeper.cron:0 30 3 * * *}")
+    public synchronized void sweep() {
+        long startedAt = System.nanoTime();
+        Instant createdBefore = Instant.now().minus(gracePeriod);
+        Iterator<BucketObject> objects = blobStore.listImages(MarkerService.BUCKET_NAME, resumeAfter, chunkSize);
+        List<BucketObject> chunk = new ArrayList<>();
+        Tally tally = new Tally();
+        long scanned = 0;
+        String lastName = resumeAfter;
+
+        while (objects.hasNext() && scanned < maxBlobsPerRun) {
+            BucketObject object = objects.next();
+            if (object.name().compareTo(resumeAfter) <= 0) {
+                continue; // the listing offset is inclusive
+            }
+            scanned++;
+            lastName = object.name();
+            chunk.add(object);
+            if (chunk.size() >= chunkSize) {
+                sweepChunk(chunk, createdBefore, tally);
+            }
+        }
+        sweepChunk(chunk, createdBefore, tally);
+        resumeAfter = objects.hasNext() ? lastName : "";
+
+        long elapsedMillis = Math.max(1, Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+        logger.info("Orphan sweep scanned {} objects ({} referenced, {} within grace period, {} orphaned{}) " +
+                        "in {} ms, {} objects/s, {}", scanned, tally.referenced, tally.recent, tally.orphaned,
+                dryRun ? ", dry run" : "", elapsedMillis, scanned * 1000 / elapsedMillis,
+                resumeAfter.isEmpty() ? "bucket complete" : "resuming after " + resumeAfter);
+    }
+
+    private void sweepChunk(List<BucketObject> chunk, Instant createdBefore, Tally tally) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> storedUrls = new HashSet<>(imageRepository.findStoredUrlsIn(
+                chunk.stream().map(object -> urlPrefix + object.name()).toList()));
+        List<String> orphans = new ArrayList<>();
+        for (BucketObject object : chunk) {
+            if (storedUrls.contains(urlPrefix + object.name())) {
+                tally.referenced++;
+            } else if (object.createdAt().isAfter(createdBefore)
+                    || !dryRun && !storedBlobService.removeUnusedEntry(MarkerService.BUCKET_NAME, object.name(), createdBefore)) {
+                tally.recent++;
+            } else {
+                tally.orphaned++;
+                orphans.add(urlPrefix + object.name());
+            }
+        }
+        chunk.clear();
+        if (orphans.isEmpty()) {
+            return;
+        }
+        if (dryRun) {
+            orphans.forEach(url -> logger.info("Orphaned image (dry run, not deleted): {}", url));
+        } else {
+            blobDeletionService.deleteUrlsAfterCommit(orphans);
+        }
+    }
+
+    private static class Tally {
+        long referenced;
+        long recent;
+        long orphaned;
+    }
+}
@@ -0,0 +1,27 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The last change version at which a user's feed changed in a way changes cannot describe, such as following or
+ * unfollowing someone. Clients of that user that synced earlier download the full list again.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sync_reset")
+public class SyncReset {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "change_version")
+    private Long changeVersion;
+}
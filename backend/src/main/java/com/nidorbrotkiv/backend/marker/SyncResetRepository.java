@@ -0,0 +1,6 @@
+package com.nidorbrotkiv.backend.marker;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SyncResetRepository extends JpaRepository<SyncReset, Long> {
+}
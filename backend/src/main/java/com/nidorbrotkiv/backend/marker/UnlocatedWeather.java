@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.marker;
+
+public record UnlocatedWeather(Long weatherInfoId, Long markerId, Double latitude, Double longitude) {
+}
@@ -10,6 +10,9 @@ import lombok.Setter;
 @Setter
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_weather_info_dt", columnList = "dt")
+})
 public class WeatherInfo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,22 @@
+package com.nidorbrotkiv.backend.marker;
+
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface WeatherInfoRepository extends JpaRepository<WeatherInfo, Long> {
+    @Query("SELECT new com.nidorbrotkiv.backend.marker.UnlocatedWeather(w.id, m.id, m.latitude, m.longitude) " +
+            "FROM Marker m JOIN m.weatherInfo w " +
+            "WHERE w.location IS NULL AND m.latitude IS NOT NULL AND m.longitude IS NOT NULL AND w.id > :afterId " +
+            "ORDER BY w.id")
+    List<UnlocatedWeather> findUnlocatedAfter(long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE WeatherInfo w SET w.location = :location, w.country = COALESCE(w.country, :country) WHERE w.id = :id")
+    int updateLocation(Long id, String location, String country);
+}
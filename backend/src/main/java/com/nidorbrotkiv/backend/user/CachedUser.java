@@ -0,0 +1,27 @@
+package com.nidorbrotkiv.backend.user;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Objects;
+
+/**
+ * Immutable copy of the user columns that requests need on every call. Entities are never cached because they are
+ * bound to the persistence context that loaded them.
+ */
+public record CachedUser(Long id, String email, String name, String profileImageUrl) {
+
+    static CachedUser of(User user) {
+        return new CachedUser(user.getId(), user.getEmail(), user.getName(), user.getProfileImageUrl());
+    }
+
+    public boolean hasDetails(String name, String profileImageUrl) {
+        return Objects.equals(this.name, name) && Objects.equals(this.profileImageUrl, profileImageUrl);
+    }
+
+    public UserDetails toUserDetails() {
+        return org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("")
+                .authorities("USER")
+                .build();
+    }
+}
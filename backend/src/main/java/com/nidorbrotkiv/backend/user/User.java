@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -22,6 +23,7 @@ import java.util.stream.Collectors;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@BatchSize(size = 100)
 @ToString(exclude = {"followRequests", "followers", "following", "receivedFollowRequests"})
 public class User implements UserDetails {
     public static final String USER_SEQUENCE = "user_sequence";
@@ -48,9 +50,11 @@ public class User implements UserDetails {
 
     @Enumerated(EnumType.STRING)
     @OneToMany(mappedBy = "requester", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private Set<FollowRequest> followRequests = new HashSet<>();
 
     @ManyToMany
+    @BatchSize(size = 100)
     @JoinTable(
             name = "user_followers",
             joinColumns = @JoinColumn(name = "follower_id"),
@@ -60,10 +64,12 @@ public class User implements UserDetails {
     private Set<User> followers = new HashSet<>();
 
     @ManyToMany(mappedBy = "followers")
+    @BatchSize(size = 100)
     @JsonIgnore
     private Set<User> following = new HashSet<>();
 
     @OneToMany(mappedBy = "target", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     private Set<FollowRequest> receivedFollowRequests = new HashSet<>();
 
     @Override
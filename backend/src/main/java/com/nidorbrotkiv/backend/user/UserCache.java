@@ -0,0 +1,73 @@
+package com.nidorbrotkiv.backend.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.nidorbrotkiv.backend.CacheGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of users by email. Every method that changes a cached column must call
+ * {@link #invalidate(String)}; the entry is dropped right away and again once the change has committed, and a reader
+ * that loaded the old row before the commit does not put it back.
+ */
+@Component
+public class UserCache {
+    private final UserRepository userRepository;
+    private final Cache<String, CachedUser> cache;
+    private final CacheGenerations<String, CachedUser> generations;
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${cache.users.size:10000}") long size,
+                     @Value("${cache.users.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.generations = new CacheGenerations<>(cache);
+    }
+
+    public Optional<CachedUser> findByEmail(String email) {
+        CachedUser cached = cache.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        // Unknown emails are not cached, so a user created right after a miss is found on the next call.
+        long stamp = generations.stamp(email);
+        Optional<CachedUser> loaded = userRepository.findByEmail(email).map(CachedUser::of);
+        loaded.ifPresent(user -> generations.putIfCurrent(email, user, stamp));
+        return loaded;
+    }
+
+    public void invalidate(String email) {
+        generations.invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generations.invalidate(email);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.stats.interval-ms:300000}")
+    public void logStats() {
+        CacheStats stats = cache.stats();
+        logger.info("User cache: {} entries, {} hits, {} misses, hit rate {}, {} evictions",
+                cache.size(), stats.hitCount(), stats.missCount(), String.format("%.3f", stats.hitRate()),
+                stats.evictionCount());
+    }
+}
@@ -1,13 +1,20 @@
 package com.nidorbrotkiv.backend.user;
 
+import com.nidorbrotkiv.backend.follow.FollowEdge;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.email=?1")
     Optional<User> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    @Query("SELECT new com.nidorbrotkiv.backend.follow.FollowEdge(u.id, f.id) FROM User u JOIN u.following f")
+    List<FollowEdge> findAllFollowEdges();
 }
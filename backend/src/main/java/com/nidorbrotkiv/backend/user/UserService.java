@@ -1,10 +1,18 @@
 package com.nidorbrotkiv.backend.user;
 
+import com.nidorbrotkiv.backend.feed.FeedService;
+import com.nidorbrotkiv.backend.follow.FollowChangedEvent;
+import com.nidorbrotkiv.backend.follow.FollowGraph;
 import com.nidorbrotkiv.backend.follow.FollowRequest;
 import com.nidorbrotkiv.backend.follow.FollowRequestRepository;
+import com.nidorbrotkiv.backend.marker.Marker;
+import com.nidorbrotkiv.backend.marker.MarkerCache;
+import com.nidorbrotkiv.backend.marker.MarkerChangedEvent;
 import com.nidorbrotkiv.backend.marker.MarkerRepository;
+import com.nidorbrotkiv.backend.marker.MarkerService;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -18,12 +26,26 @@ public class UserService {
     private final UserRepository userRepository;
     private final FollowRequestRepository followRequestRepository;
     private final MarkerRepository markerRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MarkerService markerService;
+    private final FollowGraph followGraph;
+    private final FeedService feedService;
+    private final UserCache userCache;
+    private final MarkerCache markerCache;
 
     @Autowired
-    public UserService(UserRepository userRepository, FollowRequestRepository followRequestRepository, MarkerRepository markerRepository) {
+    public UserService(UserRepository userRepository, FollowRequestRepository followRequestRepository, MarkerRepository markerRepository,
+                       ApplicationEventPublisher eventPublisher, MarkerService markerService, FollowGraph followGraph,
+                       FeedService feedService, UserCache userCache, MarkerCache markerCache) {
         this.userRepository = userRepository;
         this.followRequestRepository = followRequestRepository;
         this.markerRepository = markerRepository;
+        this.eventPublisher = eventPublisher;
+        this.markerService = markerService;
+        this.followGraph = followGraph;
+        this.feedService = feedService;
+        this.userCache = userCache;
+        this.markerCache = markerCache;
     }
 
     public User getUser(String email) {
@@ -40,6 +62,7 @@ public class UserService {
             }
         }
         userRepository.save(user);
+        userCache.invalidate(user.getEmail());
         return true;
     }
 
@@ -73,7 +96,7 @@ public class UserService {
         User requester = userRepository.findByEmail(requesterEmail)
                 .orElseThrow(() -> new NoSuchElementException("Requester user not found"));
 
-        if (!requester.getFollowing().contains(target)) {
+        if (!followGraph.follows(requester.getId(), target.getId())) {
             throw new NoSuchElementException("User does not follow this user");
         }
 
@@ -82,6 +105,8 @@ public class UserService {
 
         userRepository.save(requester);
         userRepository.save(target);
+        feedService.unfollowed(requester.getId(), target.getId());
+        eventPublisher.publishEvent(FollowChangedEvent.unfollowed(requester.getId(), target.getId()));
     }
 
     @Transactional
@@ -102,6 +127,8 @@ public class UserService {
 
         userRepository.save(requester);
         userRepository.save(target);
+        feedService.followed(requester.getId(), target.getId());
+        eventPublisher.publishEvent(FollowChangedEvent.followed(requester.getId(), target.getId()));
     }
 
     @Transactional
@@ -127,12 +154,26 @@ public class UserService {
             Optional<User> existingUser = userRepository.findByEmail(email);
             if (existingUser.isPresent()) {
                 User user = existingUser.get();
-
+                feedService.userRemoved(user.getId());
+
+                for (long followerId : followGraph.followers(user.getId())) {
+                    eventPublisher.publishEvent(FollowChangedEvent.unfollowed(followerId, user.getId()));
+                }
+                for (long followedId : followGraph.following(user.getId())) {
+                    eventPublisher.publishEvent(FollowChangedEvent.unfollowed(user.getId(), followedId));
+                }
                 user.removeAllFollowersAndFollowing();
                 user.removeAllFollowRequestsAndFollowerRequests();
-                markerRepository.deleteAll(markerRepository.findOnlyOwnedMarkersByOwnerEmail(user.getEmail()));
+                List<Marker> ownedMarkers = markerRepository.findOnlyOwnedMarkersByOwnerEmail(user.getEmail());
+                markerService.releaseImages(ownedMarkers.stream()
+                        .flatMap(marker -> marker.getImages().stream())
+                        .toList());
+                markerRepository.deleteAll(ownedMarkers);
+                ownedMarkers.forEach(marker -> eventPublisher.publishEvent(MarkerChangedEvent.deleted(marker)));
                 markerRepository.findByViewerEmail(user.getEmail()).forEach(marker -> marker.removeViewer(user));
                 userRepository.delete(user);
+                userCache.invalidate(email);
+                markerCache.invalidateOwner(user.getId());
             }
             return true;
         } catch (Exception e) {
@@ -0,0 +1,56 @@
+package com.nidorbrotkiv.backend.weather;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+
+@Component
+@ConditionalOnProperty(name = "weather.provider", havingValue = "openweathermap", matchIfMissing = true)
+public class OpenWeatherMapProvider implements WeatherProvider {
+    private final RestClient restClient;
+    private final String url;
+    private final String apiKey;
+
+    public OpenWeatherMapProvider(@Value("${weather.openweathermap.url:https://api.openweathermap.org/data/2.5/weather}") String url,
+                                  @Value("${weather.openweathermap.api-key:}") String apiKey,
+                                  @Value("${weather.openweathermap.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                  @Value("${weather.openweathermap.read-timeout-ms:2000}") int readTimeoutMillis) {
+        this.url = url;
+        this.apiKey = apiKey;
+        // A slow provider must not hold up marker saves; a timeout ends up as a marker without weather.
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public WeatherReport fetchCurrentWeather(double latitude, double longitude) throws IOException {
+        if (apiKey.isBlank()) {
+            throw new IOException("weather.openweathermap.api-key is not set");
+        }
+        try {
+            JsonNode response = restClient.get()
+                    .uri(url + "?lat={lat}&lon={lon}&appid={key}", latitude, longitude, apiKey)
+                    .retrieve()
+                    .body(JsonNode.class);
+            if (response == null || !response.hasNonNull("main")) {
+                throw new IOException("Unexpected weather response for " + latitude + ", " + longitude);
+            }
+            JsonNode weather = response.path("weather").path(0);
+            return new WeatherReport(
+                    response.path("main").path("temp").asDouble(),
+                    weather.path("icon").asText(null),
+                    response.path("sys").path("country").asText(null),
+                    weather.path("description").asText(null));
+        } catch (RestClientException e) {
+            throw new IOException("Failed to fetch weather for " + latitude + ", " + longitude, e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.nidorbrotkiv.backend.weather;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Offline provider for local runs and load tests. Temperatures (in Kelvin, like OpenWeatherMap) fall off with
+ * latitude, so results are deterministic but not uniform.
+ */
+@Component
+@ConditionalOnProperty(name = "weather.provider", havingValue = "stub")
+public class StubWeatherProvider implements WeatherProvider {
+    @Override
+    public WeatherReport fetchCurrentWeather(double latitude, double longitude) {
+        double temp = 300 - Math.abs(latitude) * 0.5;
+        return new WeatherReport(Math.round(temp * 100) / 100.0, "01d", null, "clear sky");
+    }
+}
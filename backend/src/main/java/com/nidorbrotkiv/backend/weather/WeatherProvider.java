@@ -0,0 +1,10 @@
+package com.nidorbrotkiv.backend.weather;
+
+import java.io.IOException;
+
+/**
+ * Source of current weather. Selected with weather.provider: "openweathermap" (default) or "stub".
+ */
+public interface WeatherProvider {
+    WeatherReport fetchCurrentWeather(double latitude, double longitude) throws IOException;
+}
@@ -0,0 +1,4 @@
+package com.nidorbrotkiv.backend.weather;
+
+public record WeatherReport(Double temp, String icon, String country, String description) {
+}
@@ -0,0 +1,68 @@
+package com.nidorbrotkiv.backend.weather;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Current weather, cached per grid cell and time bucket. Every location in a cell shares the weather of the cell
+ * centre for the rest of the bucket, and concurrent lookups of the same cell wait for a single provider call.
+ */
+@Service
+public class WeatherService {
+    private final WeatherProvider weatherProvider;
+    private final double cellDegrees;
+    private final long bucketSeconds;
+    private final LoadingCache<WeatherCell, WeatherReport> cache;
+    private static final Logger logger = LoggerFactory.getLogger(WeatherService.class);
+
+    public WeatherService(WeatherProvider weatherProvider,
+                          @Value("${weather.cache.cell-degrees:0.1}") double cellDegrees,
+                          @Value("${weather.cache.bucket-minutes:30}") long bucketMinutes,
+                          @Value("${weather.cache.size:10000}") long cacheSize) {
+        this.weatherProvider = weatherProvider;
+        this.cellDegrees = cellDegrees;
+        this.bucketSeconds = Duration.ofMinutes(bucketMinutes).toSeconds();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(bucketMinutes))
+                .build(new CacheLoader<>() {
+                    @Override
+                    public WeatherReport load(WeatherCell cell) throws IOException {
+                        return fetch(cell);
+                    }
+                });
+    }
+
+    public Optional<WeatherReport> getCurrentWeather(double latitude, double longitude) {
+        WeatherCell cell = new WeatherCell(
+                (long) Math.floor(latitude / cellDegrees),
+                (long) Math.floor(longitude / cellDegrees),
+                System.currentTimeMillis() / 1000 / bucketSeconds);
+        try {
+            return Optional.of(cache.get(cell));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            logger.warn("Could not fetch weather for {}, {}: {}", latitude, longitude, e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private WeatherReport fetch(WeatherCell cell) throws IOException {
+        double latitude = (cell.latitudeIndex() + 0.5) * cellDegrees;
+        double longitude = (cell.longitudeIndex() + 0.5) * cellDegrees;
+        return weatherProvider.fetchCurrentWeather(latitude, longitude);
+    }
+
+    private record WeatherCell(long latitudeIndex, long longitudeIndex, long timeBucket) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.nidorbrotkiv.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheGenerationsTest {
+    private final Cache<Long, String> cache = CacheBuilder.newBuilder().build();
+    private final CacheGenerations<Long, String> generations = new CacheGenerations<>(cache);
+
+    @Test
+    void putsValueLoadedWithoutInvalidation() {
+        long stamp = generations.stamp(1L);
+        generations.putIfCurrent(1L, "loaded", stamp);
+
+        assertEquals("loaded", cache.getIfPresent(1L));
+    }
+
+    @Test
+    void skipsValueLoadedBeforeInvalidation() {
+        long stamp = generations.stamp(1L);
+        // A writer commits and invalidates while the reader is still loading the old value.
+        generations.invalidate(1L);
+        generations.putIfCurrent(1L, "stale", stamp);
+
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    void skipsValueLoadedBeforeBulkInvalidation() {
+        long matchingStamp = generations.stamp(1L);
+        long allStamp = generations.stamp(2L);
+        generations.invalidateMatching(value -> true);
+        generations.putIfCurrent(1L, "stale", matchingStamp);
+        generations.invalidateAll();
+        generations.putIfCurrent(2L, "stale", allStamp);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidationOfOtherStripeDoesNotSkipPut() {
+        long stamp = generations.stamp(1L);
+        generations.invalidate(2L);
+        generations.putIfCurrent(1L, "loaded", stamp);
+
+        assertEquals("loaded", cache.getIfPresent(1L));
+    }
+}
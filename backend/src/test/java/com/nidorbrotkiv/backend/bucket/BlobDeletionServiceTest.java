@@ -0,0 +1,159 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BlobDeletionServiceTest {
+    private static final String BUCKET = "deletion-test-bucket";
+
+    @Autowired
+    private BlobDeletionService blobDeletionService;
+
+    @Autowired
+    private LocalBlobStore blobStore;
+
+    @Autowired
+    private PendingBlobDeletionRepository pendingBlobDeletionRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void deletionWaitsForTheCommit() throws Exception {
+        Path file = store("committed");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            blobDeletionService.deleteUrlsAfterCommit(List.of(url("committed")));
+            assertTrue(Files.exists(file));
+        });
+
+        await(() -> !Files.exists(file));
+        await(() -> pendingRows("committed").isEmpty());
+    }
+
+    @Test
+    void rolledBackDeletionIsNotExecuted() throws Exception {
+        Path file = store("rolled-back");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            blobDeletionService.deleteUrlsAfterCommit(List.of(url("rolled-back")));
+            status.setRollbackOnly();
+        });
+
+        Thread.sleep(200);
+        assertTrue(Files.exists(file));
+        assertEquals(List.of(), pendingRows("rolled-back"));
+    }
+
+    @Test
+    void failedDeletionsAreRetriedWithBackoff() throws Exception {
+        Path deletable = store("deletable");
+        // A directory with content cannot be deleted, which stands in for a failing request.
+        Path undeletable = blobStore.resolve(BUCKET, "undeletable");
+        Files.createDirectories(undeletable);
+        Files.write(undeletable.resolve("content"), new byte[]{1});
+
+        blobDeletionService.deleteUrlsAfterCommit(List.of(url("deletable"), url("undeletable")));
+
+        await(() -> !Files.exists(deletable) && pendingRows("undeletable").stream().anyMatch(row -> row.getAttempts() == 1));
+        assertTrue(pendingRows("deletable").isEmpty());
+        assertNextAttemptIn(Duration.ofMinutes(5));
+
+        makeDue("undeletable");
+        blobDeletionService.retryPendingDeletions();
+        assertEquals(2, pendingRows("undeletable").get(0).getAttempts());
+        assertNextAttemptIn(Duration.ofMinutes(10));
+
+        Files.delete(undeletable.resolve("content"));
+        makeDue("undeletable");
+        blobDeletionService.retryPendingDeletions();
+        assertFalse(Files.exists(undeletable));
+        assertEquals(List.of(), pendingRows("undeletable"));
+    }
+
+    @Test
+    void deletionIsSkippedWhenTheContentIsReferencedAgain() {
+        Path file = store("referenced-again");
+        PendingBlobDeletion deletion = pendingBlobDeletionRepository.save(
+                new PendingBlobDeletion(BUCKET, "referenced-again", Instant.now().minusSeconds(1)));
+        // The re-upload's own cancellation has not happened yet, as when a flush already picked up the row.
+        storedBlobRepository.insertIfAbsent(BUCKET, "referenced-again", "image/png", true, Instant.now());
+
+        blobDeletionService.retryPendingDeletions();
+
+        assertTrue(Files.exists(file));
+        assertFalse(pendingBlobDeletionRepository.existsById(deletion.getId()));
+    }
+
+    @Test
+    void objectWrittenAgainAfterTheLookupIsKept() throws Exception {
+        Path file = store("rewritten");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(60)));
+        Map<String, Long> generations = blobStore.findGenerations(BUCKET, List.of("rewritten", "missing"));
+        assertEquals(1, generations.size());
+        store("rewritten");
+
+        assertEquals(List.of(), blobStore.deleteImagesFromBucket(BUCKET, generations));
+        assertTrue(Files.exists(file));
+
+        assertEquals(List.of(), blobStore.deleteImagesFromBucket(BUCKET, blobStore.findGenerations(BUCKET, List.of("rewritten"))));
+        assertFalse(Files.exists(file));
+    }
+
+    private Path store(String name) {
+        blobStore.uploadImageToBucket(BUCKET, new ByteArrayInputStream(name.getBytes(StandardCharsets.UTF_8)), name,
+                "image/png");
+        return blobStore.resolve(BUCKET, name);
+    }
+
+    private String url(String name) {
+        return blobStore.publicUrl(BUCKET, name);
+    }
+
+    private List<PendingBlobDeletion> pendingRows(String name) {
+        return pendingBlobDeletionRepository.findAll().stream()
+                .filter(row -> row.getBucketName().equals(BUCKET) && row.getBlobName().equals(name))
+                .toList();
+    }
+
+    private void makeDue(String name) {
+        PendingBlobDeletion row = pendingRows(name).get(0);
+        row.setNextAttemptAt(Instant.now().minusSeconds(1));
+        pendingBlobDeletionRepository.save(row);
+    }
+
+    private void assertNextAttemptIn(Duration delay) {
+        Instant nextAttemptAt = pendingRows("undeletable").get(0).getNextAttemptAt();
+        Instant expected = Instant.now().plus(delay);
+        assertTrue(nextAttemptAt.isAfter(expected.minusSeconds(30)) && nextAttemptAt.isBefore(expected.plusSeconds(1)),
+                () -> "next attempt at " + nextAttemptAt + ", expected about " + expected);
+    }
+
+    // The after-commit flush runs on the deletion service's own thread.
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,207 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.storage.StorageOptions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Signs direct uploads with a generated service account key and sends them to a local stand-in for the storage
+ * host, which checks the V4 signature and the signed length range the way the real one does and also answers
+ * object metadata requests.
+ */
+class GoogleCloudServiceTest {
+    private static final String BUCKET = "test-bucket";
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private KeyPair keyPair;
+    private HttpServer server;
+    private String host;
+    private GoogleCloudService service;
+
+    @BeforeEach
+    void start() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handleUpload);
+        server.createContext("/storage/v1/", this::handleMetadata);
+        server.start();
+        host = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        ServiceAccountCredentials credentials = ServiceAccountCredentials.newBuilder()
+                .setClientEmail("signer@test.iam.gserviceaccount.com")
+                .setPrivateKey(keyPair.getPrivate())
+                .setProjectId("test")
+                .build();
+        service = new GoogleCloudService(StorageOptions.newBuilder()
+                .setProjectId("test")
+                .setHost(host)
+                .setCredentials(credentials)
+                .build()
+                .getService(), host);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void signedUploadIsAccepted() throws Exception {
+        DirectUpload upload = service.createDirectUpload(BUCKET, "signed", "image/png", 3, Duration.ofMinutes(10));
+        byte[] content = {1, 2, 3};
+
+        HttpResponse<String> response = send(upload, upload.headers().get("Content-Type"), content);
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertArrayEquals(content, objects.get("/" + BUCKET + "/signed"));
+    }
+
+    @Test
+    void uploadLargerThanTheSignedRangeIsRejected() throws Exception {
+        DirectUpload upload = service.createDirectUpload(BUCKET, "large", "image/png", 3, Duration.ofMinutes(10));
+        assertEquals("0,3", upload.headers().get("x-goog-content-length-range"));
+
+        HttpResponse<String> response = send(upload, upload.headers().get("Content-Type"), new byte[4]);
+
+        assertEquals(400, response.statusCode());
+        assertEquals(Set.of(), objects.keySet());
+    }
+
+    @Test
+    void uploadWithOtherContentTypeIsRejected() throws Exception {
+        DirectUpload upload = service.createDirectUpload(BUCKET, "tampered", "image/png", 3, Duration.ofMinutes(10));
+
+        HttpResponse<String> response = send(upload, "text/html", new byte[]{1});
+
+        assertEquals(403, response.statusCode());
+        assertEquals(Set.of(), objects.keySet());
+    }
+
+    @Test
+    void readsTheCreationTime() {
+        GoogleCloudService metadataService = new GoogleCloudService(StorageOptions.newBuilder()
+                .setProjectId("test")
+                .setHost(host)
+                .setCredentials(NoCredentials.getInstance())
+                .build()
+                .getService(), host);
+
+        BucketObject object = metadataService.findImage(BUCKET, "stored").orElseThrow();
+
+        assertEquals(new BucketObject("stored", Instant.parse("2024-05-06T07:08:09.123Z"), 42), object);
+    }
+
+    private HttpResponse<String> send(DirectUpload upload, String contentType, byte[] content) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(upload.url()))
+                .method(upload.method(), HttpRequest.BodyPublishers.ofByteArray(content))
+                .timeout(Duration.ofSeconds(10));
+        upload.headers().forEach(request::header);
+        request.setHeader("Content-Type", contentType);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void handleMetadata(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = ("{\"bucket\":\"" + BUCKET + "\",\"name\":\"stored\","
+                    + "\"timeCreated\":\"2024-05-06T07:08:09.123Z\",\"size\":\"42\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String error;
+            try {
+                error = verifySignature(exchange);
+            } catch (RuntimeException e) {
+                error = e.toString();
+            }
+            int status = error == null ? 200 : 403;
+            String lengthRange = exchange.getRequestHeaders().getFirst("x-goog-content-length-range");
+            if (error == null && lengthRange != null
+                    && body.length > Long.parseLong(lengthRange.substring(lengthRange.indexOf(',') + 1))) {
+                error = "EntityTooLarge";
+                status = 400;
+            }
+            if (error == null) {
+                objects.put(exchange.getRequestURI().getRawPath(), body);
+            }
+            byte[] response = Objects.requireNonNullElse(error, "").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+            if (response.length > 0) {
+                exchange.getResponseBody().write(response);
+            }
+        }
+    }
+
+    // Rebuilds the canonical request of a V4 signed URL and checks its signature with the service account key.
+    private String verifySignature(HttpExchange exchange) {
+        URI uri = exchange.getRequestURI();
+        Map<String, String> rawParams = new TreeMap<>();
+        for (String param : uri.getRawQuery().split("&")) {
+            int separator = param.indexOf('=');
+            rawParams.put(param.substring(0, separator), param.substring(separator + 1));
+        }
+        String signature = rawParams.remove("X-Goog-Signature");
+        String signedHeaders = decode(rawParams.get("X-Goog-SignedHeaders"));
+        String credential = decode(rawParams.get("X-Goog-Credential"));
+        String canonicalHeaders = Arrays.stream(signedHeaders.split(";"))
+                .map(name -> name + ":" + exchange.getRequestHeaders().getFirst(name).trim() + "\n")
+                .collect(Collectors.joining());
+        String canonicalQuery = rawParams.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+        String canonicalRequest = String.join("\n", exchange.getRequestMethod(), uri.getRawPath(), canonicalQuery,
+                canonicalHeaders, signedHeaders, "UNSIGNED-PAYLOAD");
+        String stringToSign = String.join("\n", "GOOG4-RSA-SHA256", decode(rawParams.get("X-Goog-Date")),
+                credential.substring(credential.indexOf('/') + 1),
+                Hashing.sha256().hashString(canonicalRequest, StandardCharsets.UTF_8).toString());
+        try {
+            Signature verifier = Signature.getInstance("SHA256withRSA");
+            verifier.initVerify(keyPair.getPublic());
+            verifier.update(stringToSign.getBytes(StandardCharsets.UTF_8));
+            return verifier.verify(BaseEncoding.base16().lowerCase().decode(signature)) ? null : "Signature mismatch";
+        } catch (GeneralSecurityException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
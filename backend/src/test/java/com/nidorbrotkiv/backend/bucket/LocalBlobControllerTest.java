@@ -0,0 +1,163 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+class LocalBlobControllerTest {
+    private static final String BUCKET = "controller-test-bucket";
+    private static final byte[] CONTENT = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LocalBlobStore blobStore;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void uploadWithinTheSignedLimitIsStored() throws Exception {
+        URI url = URI.create(blobStore.createDirectUpload(BUCKET, "within-limit", "image/png", 4,
+                Duration.ofMinutes(1)).url());
+
+        mockMvc.perform(put(url.getPath() + "?" + url.getQuery()).contentType("image/png").content(new byte[]{1, 2, 3, 4}))
+                .andExpect(status().isOk());
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, Files.readAllBytes(blobStore.resolve(BUCKET, "within-limit")));
+    }
+
+    @Test
+    void uploadOverTheSignedLimitIsRejected() throws Exception {
+        URI url = URI.create(blobStore.createDirectUpload(BUCKET, "over-limit", "image/png", 4,
+                Duration.ofMinutes(1)).url());
+
+        mockMvc.perform(put(url.getPath() + "?" + url.getQuery()).contentType("image/png").content(new byte[5]))
+                .andExpect(status().isPayloadTooLarge());
+        // A chunked body announces no length, so it is cut off while it is copied.
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://localhost:" + port + url.getPath()
+                + "?" + url.getQuery()).toURL().openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setRequestProperty("Content-Type", "image/png");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(2);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(new byte[5]);
+        }
+        assertEquals(413, connection.getResponseCode());
+
+        assertFalse(Files.exists(blobStore.resolve(BUCKET, "over-limit")));
+    }
+
+    @Test
+    void raisedLimitInvalidatesTheSignature() throws Exception {
+        URI url = URI.create(blobStore.createDirectUpload(BUCKET, "raised-limit", "image/png", 4,
+                Duration.ofMinutes(1)).url());
+
+        mockMvc.perform(put(url.getPath() + "?" + url.getQuery().replace("max-bytes=4", "max-bytes=5"))
+                        .contentType("image/png")
+                        .content(new byte[5]))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void servesTheObjectWithAnEtag() throws Exception {
+        String etag = storeAndGetEtag("served", CONTENT);
+
+        mockMvc.perform(get("/blobs/{bucket}/served", BUCKET))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(CONTENT));
+        mockMvc.perform(get("/blobs/{bucket}/served", BUCKET).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/blobs/{bucket}/served", BUCKET).header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void servesASingleRange() throws Exception {
+        storeAndGetEtag("ranged", CONTENT);
+
+        mockMvc.perform(get("/blobs/{bucket}/ranged", BUCKET).header(HttpHeaders.RANGE, "bytes=2-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10"))
+                .andExpect(content().bytes(new byte[]{2, 3, 4}));
+        mockMvc.perform(get("/blobs/{bucket}/ranged", BUCKET).header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+                .andExpect(content().bytes(new byte[]{7, 8, 9}));
+    }
+
+    @Test
+    void ifRangeWithAnotherEtagGetsTheWholeObject() throws Exception {
+        String etag = storeAndGetEtag("if-range", CONTENT);
+
+        mockMvc.perform(get("/blobs/{bucket}/if-range", BUCKET)
+                        .header(HttpHeaders.RANGE, "bytes=0-1")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT));
+        mockMvc.perform(get("/blobs/{bucket}/if-range", BUCKET)
+                        .header(HttpHeaders.RANGE, "bytes=0-1")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(new byte[]{0, 1}));
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        storeAndGetEtag("unsatisfiable", CONTENT);
+
+        mockMvc.perform(get("/blobs/{bucket}/unsatisfiable", BUCKET).header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void parsesRanges() {
+        assertArrayEquals(new long[]{0, 9}, LocalBlobController.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[]{2, 9}, LocalBlobController.parseRange("bytes=2-100", 10));
+        assertArrayEquals(new long[]{0, 9}, LocalBlobController.parseRange("bytes=-20", 10));
+        assertArrayEquals(new long[0], LocalBlobController.parseRange("bytes=-0", 10));
+        assertArrayEquals(new long[0], LocalBlobController.parseRange("bytes=10-12", 10));
+        assertArrayEquals(new long[0], LocalBlobController.parseRange("bytes=0-", 0));
+        // Ignored: other units, multiple ranges, reversed bounds and garbage.
+        assertNull(LocalBlobController.parseRange("items=0-1", 10));
+        assertNull(LocalBlobController.parseRange("bytes=0-1,4-5", 10));
+        assertNull(LocalBlobController.parseRange("bytes=5-2", 10));
+        assertNull(LocalBlobController.parseRange("bytes=a-b", 10));
+        assertNull(LocalBlobController.parseRange("bytes=5", 10));
+    }
+
+    private String storeAndGetEtag(String name, byte[] content) throws Exception {
+        blobStore.uploadImageToBucket(BUCKET, new ByteArrayInputStream(content), name, "image/png");
+        return mockMvc.perform(head("/blobs/{bucket}/{name}", BUCKET, name))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
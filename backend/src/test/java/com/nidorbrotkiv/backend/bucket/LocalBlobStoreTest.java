@@ -0,0 +1,46 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalBlobStoreTest {
+    private static final String BUCKET = "bucket";
+
+    @TempDir
+    private Path root;
+
+    @Test
+    void listsInNameOrderAcrossPages() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(root.toString(), "http://localhost/blobs", "key");
+        List<String> names = List.of("e", "a", "d", "c", "b", "f", "g");
+        for (String name : names) {
+            store.uploadImageToBucket(BUCKET, new ByteArrayInputStream(new byte[]{1}), name, "image/png");
+        }
+        // Partial uploads are hidden until they are complete.
+        Files.write(root.resolve(BUCKET).resolve(".upload.part"), new byte[]{1});
+
+        assertEquals(List.of("a", "b", "c", "d", "e", "f", "g"), list(store, "", 3));
+        assertEquals(List.of("c", "d", "e", "f", "g"), list(store, "c", 2));
+        assertEquals(List.of("a", "b", "c", "d", "e", "f", "g"), list(store, "", 7));
+        assertEquals(List.of(), list(store, "h", 3));
+        assertEquals(List.of(), list(store, "", 3, "missing"));
+    }
+
+    private static List<String> list(LocalBlobStore store, String startOffset, int pageSize) {
+        return list(store, startOffset, pageSize, BUCKET);
+    }
+
+    private static List<String> list(LocalBlobStore store, String startOffset, int pageSize, String bucket) {
+        List<String> names = new ArrayList<>();
+        store.listImages(bucket, startOffset, pageSize).forEachRemaining(object -> names.add(object.name()));
+        return names;
+    }
+}
@@ -0,0 +1,89 @@
+package com.nidorbrotkiv.backend.bucket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class StoredBlobServiceTest {
+    private static final String BUCKET = "test-bucket";
+
+    @Autowired
+    private StoredBlobService storedBlobService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Test
+    void contentIsReusedOnlyOnceUploaded() {
+        assertTrue(storedBlobService.addReference(BUCKET, "pending", "image/png"));
+        // The first upload has not finished, so the second uploader stores the content itself.
+        assertTrue(storedBlobService.addReference(BUCKET, "pending", "image/png"));
+        storedBlobService.markUploaded(BUCKET, "pending");
+
+        assertFalse(storedBlobService.addReference(BUCKET, "pending", "image/png"));
+        assertEquals(3, referenceCount("pending"));
+    }
+
+    @Test
+    void concurrentFirstUploadsBothAddAReference() throws Exception {
+        int uploaders = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(uploaders);
+        try {
+            Callable<Boolean> upload = () -> storedBlobService.addReference(BUCKET, "concurrent", "image/jpeg");
+            List<Future<Boolean>> results = executor.invokeAll(Collections.nCopies(uploaders, upload));
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(uploaders, referenceCount("concurrent"));
+    }
+
+    @Test
+    void directUploadIsReferencedOnce() {
+        assertTrue(storedBlobService.addUploadedReference(BUCKET, "direct", "image/webp"));
+        assertFalse(storedBlobService.addUploadedReference(BUCKET, "direct", "image/webp"));
+        assertFalse(storedBlobService.addReference(BUCKET, "direct", "image/webp"));
+    }
+
+    @Test
+    void lastReleaseRemovesTheEntry() {
+        storedBlobService.addReference(BUCKET, "released", "image/png");
+        storedBlobService.addReference(BUCKET, "released", "image/png");
+
+        assertFalse(storedBlobService.releaseReference(BUCKET, "released"));
+        assertTrue(storedBlobService.releaseReference(BUCKET, "released"));
+        assertTrue(storedBlobRepository.findAll().stream().noneMatch(blob -> blob.getName().equals("released")));
+    }
+
+    @Test
+    void leakedEntryIsRemovedOnceItsUploadCannotBeRunning() {
+        storedBlobService.addReference(BUCKET, "leaked", "image/png");
+
+        assertFalse(storedBlobService.removeUnusedEntry(BUCKET, "leaked", Instant.now().minusSeconds(60)));
+        assertTrue(storedBlobService.removeUnusedEntry(BUCKET, "leaked", Instant.now().plusSeconds(1)));
+        assertTrue(storedBlobRepository.findAll().stream().noneMatch(blob -> blob.getName().equals("leaked")));
+        // The next upload of the same content has to store it again.
+        assertTrue(storedBlobService.addReference(BUCKET, "leaked", "image/png"));
+    }
+
+    private long referenceCount(String name) {
+        return storedBlobRepository.findAll().stream()
+                .filter(blob -> blob.getName().equals(name))
+                .findFirst()
+                .orElseThrow()
+                .getReferenceCount();
+    }
+}
@@ -0,0 +1,138 @@
+package com.nidorbrotkiv.backend.config;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serves the issuer's key set from a local stand-in and counts how often it is fetched.
+ */
+class CachingJwkSourceTest {
+    private static final int CALLERS = 16;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final InMemoryJwkSetStore store = new InMemoryJwkSetStore();
+    private volatile String served;
+    private HttpServer server;
+    private CachingJwkSource source;
+
+    @BeforeEach
+    void start() throws Exception {
+        served = new JWKSet(new RSAKeyGenerator(2048).keyID("rotated").generate().toPublicJWK()).toString();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            fetches.incrementAndGet();
+            try (exchange) {
+                // Slow enough for the whole burst to arrive while the first fetch is running.
+                Thread.sleep(200);
+                byte[] body = served.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        String jwkSetUri = "http://127.0.0.1:" + server.getAddress().getPort() + "/certs";
+        source = new CachingJwkSource(new OidcJwkSetFetcher("http://127.0.0.1", jwkSetUri), store);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void burstOfUnknownKeyIdsRefreshesOnce() throws Exception {
+        List<List<JWK>> results = selectConcurrently("rotated");
+
+        assertEquals(1, fetches.get());
+        results.forEach(keys -> assertEquals(1, keys.size()));
+    }
+
+    @Test
+    void keyIdMissingAfterRefreshIsThrottled() throws Exception {
+        List<List<JWK>> results = selectConcurrently("unknown");
+        selectConcurrently("unknown");
+
+        assertEquals(1, fetches.get());
+        results.forEach(keys -> assertTrue(keys.isEmpty()));
+    }
+
+    @Test
+    void restartUsesTheStoredKeysWithoutFetching() throws Exception {
+        selectConcurrently("rotated");
+
+        CachingJwkSource restarted = new CachingJwkSource(() -> {
+            throw new IOException("issuer unreachable");
+        }, store);
+        List<JWK> keys = restarted.get(new JWKSelector(new JWKMatcher.Builder().keyID("rotated").build()), null);
+
+        assertEquals(1, keys.size());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void failedDiscoveryNamesTheDiscoveryUrl() {
+        String issuer = "http://127.0.0.1:" + server.getAddress().getPort() + "/missing";
+
+        IOException e = assertThrows(IOException.class, () -> new OidcJwkSetFetcher(issuer, "").fetchJwkSet());
+
+        assertTrue(e.getMessage().contains(issuer + "/.well-known/openid-configuration"), e.getMessage());
+    }
+
+    private List<List<JWK>> selectConcurrently(String keyId) throws Exception {
+        JWKSelector selector = new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Callable<List<JWK>>> calls = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                calls.add(() -> source.get(selector, null));
+            }
+            List<List<JWK>> results = new ArrayList<>();
+            for (Future<List<JWK>> result : executor.invokeAll(calls)) {
+                results.add(result.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class InMemoryJwkSetStore implements JwkSetStore {
+        private volatile String json;
+
+        @Override
+        public Optional<String> load() {
+            return Optional.ofNullable(json);
+        }
+
+        @Override
+        public void save(String jwkSetJson) {
+            json = jwkSetJson;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.nidorbrotkiv.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class DatabaseJwkSetStoreTest {
+    @Autowired
+    private DatabaseJwkSetStore store;
+
+    @Autowired
+    private StoredJwkSetRepository repository;
+
+    @Test
+    void keepsOnlyTheLatestKeySet() {
+        store.save("{\"keys\":[]}");
+        store.save("{\"keys\":[{\"kid\":\"rotated\"}]}");
+
+        assertEquals(Optional.of("{\"keys\":[{\"kid\":\"rotated\"}]}"), store.load());
+        assertEquals(1, repository.count());
+    }
+}
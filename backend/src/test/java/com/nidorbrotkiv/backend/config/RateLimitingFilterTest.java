@@ -0,0 +1,82 @@
+package com.nidorbrotkiv.backend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "cors.allowed.origins=http://localhost",
+        "google.cloud.project-id=test",
+        "allowed.emails=reader@example.com,first@example.com,second@example.com,third@example.com",
+        "spring.datasource.url=jdbc:h2:mem:rate-limit;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "bucket.capacity=5"
+})
+@AutoConfigureMockMvc
+class RateLimitingFilterTest {
+    private static final int CAPACITY = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private JwtDecoder jwtDecoder;
+
+    @Test
+    void badTokensAreLimitedByClientAddressBeforeVerification() throws Exception {
+        when(jwtDecoder.decode(anyString()))
+                .thenThrow(new JwtValidationException("Expired", List.of(new OAuth2Error("invalid_token"))));
+
+        for (int i = 0; i < CAPACITY; i++) {
+            mockMvc.perform(get("/api/markers/user").header("Authorization", "Bearer bad-token-" + i))
+                    .andExpect(status().isUnauthorized());
+        }
+        mockMvc.perform(get("/api/markers/user").header("Authorization", "Bearer bad-token"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        // The rejected request never reached signature verification.
+        verify(jwtDecoder, times(CAPACITY)).decode(anyString());
+    }
+
+    @Test
+    void signedInUsersBehindOneProxyAreNotLimitedByItsAddress() throws Exception {
+        List<String> users = List.of("first@example.com", "second@example.com", "third@example.com");
+        for (String user : users) {
+            when(jwtDecoder.decode("token-" + user)).thenReturn(Jwt.withTokenValue("token-" + user)
+                    .header("alg", "RS256")
+                    .claim("email", user)
+                    .expiresAt(Instant.now().plusSeconds(3600))
+                    .build());
+        }
+
+        // All calls come from the frontend server's address and together exceed its bucket; each user stays within
+        // their own, and only the first call of a token, before it is verified, is charged to the address.
+        for (int i = 0; i < CAPACITY - 1; i++) {
+            for (String user : users) {
+                mockMvc.perform(get("/api/markers/user/page")
+                                .with(request -> {
+                                    request.setRemoteAddr("10.0.0.7");
+                                    return request;
+                                })
+                                .header("Authorization", "Bearer token-" + user))
+                        .andExpect(status().isOk());
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nidorbrotkiv.backend.feed;
+
+import com.nidorbrotkiv.backend.marker.Marker;
+import com.nidorbrotkiv.backend.marker.MarkerRepository;
+import com.nidorbrotkiv.backend.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = {
+        "cors.allowed.origins=http://localhost",
+        "spring.datasource.url=jdbc:h2:mem:feed-entry;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FeedEntryRepositoryTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    private FeedService feedService;
+    private User anna;
+    private User bo;
+    private User cecilia;
+    private long annaPublic;
+    private long annaPrivate;
+    private long boPublic;
+    private long boPrivate;
+    private long ceciliaPublic;
+
+    @BeforeEach
+    void createUsers() {
+        feedService = new FeedService(feedEntryRepository, markerRepository, null);
+        anna = createUser("anna@example.com");
+        bo = createUser("bo@example.com");
+        cecilia = createUser("cecilia@example.com");
+        // Anna follows Bo and Cecilia, Bo follows Anna, and Cecilia follows nobody.
+        follow(anna, bo);
+        follow(anna, cecilia);
+        follow(bo, anna);
+        annaPublic = createMarker(anna, true);
+        annaPrivate = createMarker(anna, false);
+        boPublic = createMarker(bo, true);
+        boPrivate = createMarker(bo, false);
+        ceciliaPublic = createMarker(cecilia, true);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void expectedEntriesAreOwnMarkersAndPublicMarkersOfFollowedUsers() {
+        feedEntryRepository.insertExpectedEntries();
+
+        assertEquals(Set.of(
+                entry(anna, annaPublic), entry(anna, annaPrivate), entry(anna, boPublic), entry(anna, ceciliaPublic),
+                entry(bo, boPublic), entry(bo, boPrivate), entry(bo, annaPublic),
+                entry(cecilia, ceciliaPublic)), entries());
+        assertEquals(new FeedConsistency(0, 0), feedService.check());
+    }
+
+    @Test
+    void checkCountsMissingAndExtraEntries() {
+        feedEntryRepository.insertExpectedEntries();
+        feedEntryRepository.deleteById(new FeedEntry.Key(anna.getId(), boPublic));
+        feedEntryRepository.deleteById(new FeedEntry.Key(bo.getId(), annaPublic));
+        feedEntryRepository.save(new FeedEntry(cecilia.getId(), boPrivate));
+        feedEntryRepository.flush();
+
+        assertEquals(new FeedConsistency(2, 1), feedService.check());
+
+        feedEntryRepository.insertMissingEntries();
+        feedEntryRepository.deleteExtraEntries();
+
+        assertEquals(new FeedConsistency(0, 0), feedService.check());
+    }
+
+    private Set<String> entries() {
+        return feedEntryRepository.findAll().stream()
+                .map(entry -> entry.getUserId() + ":" + entry.getMarkerId())
+                .collect(Collectors.toSet());
+    }
+
+    private static String entry(User user, long markerId) {
+        return user.getId() + ":" + markerId;
+    }
+
+    private User createUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        return entityManager.persist(user);
+    }
+
+    private static void follow(User follower, User followed) {
+        followed.getFollowers().add(follower);
+        follower.getFollowing().add(followed);
+    }
+
+    private long createMarker(User owner, boolean isPublic) {
+        Marker marker = new Marker();
+        marker.setUser(owner);
+        marker.setTitle(owner.getEmail());
+        marker.setIsPublic(isPublic);
+        return entityManager.persist(marker).getId();
+    }
+}
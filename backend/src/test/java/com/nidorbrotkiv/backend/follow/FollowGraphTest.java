@@ -0,0 +1,101 @@
+package com.nidorbrotkiv.backend.follow;
+
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FollowGraphTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final FollowGraph graph = new FollowGraph(userRepository);
+
+    @Test
+    void addKeepsBothDirectionsSorted() {
+        graph.addEdge(1, 3);
+        graph.addEdge(1, 2);
+        graph.addEdge(4, 2);
+        graph.addEdge(1, 2);
+
+        assertTrue(graph.follows(1, 2));
+        assertFalse(graph.follows(2, 1));
+        assertArrayEquals(new long[]{2, 3}, graph.following(1));
+        assertArrayEquals(new long[]{1, 4}, graph.followers(2));
+        assertEquals(2, graph.followingCount(1));
+        assertEquals(2, graph.followerCount(2));
+    }
+
+    @Test
+    void removeDropsOnlyThatEdge() {
+        graph.addEdge(1, 2);
+        graph.addEdge(1, 3);
+        graph.removeEdge(1, 2);
+        graph.removeEdge(5, 6);
+
+        assertFalse(graph.follows(1, 2));
+        assertTrue(graph.follows(1, 3));
+        assertArrayEquals(new long[0], graph.followers(2));
+        assertEquals(0, graph.followingCount(5));
+    }
+
+    @Test
+    void appliesFollowEvents() {
+        graph.onFollowChanged(FollowChangedEvent.followed(7L, 8L));
+        assertTrue(graph.follows(7, 8));
+
+        graph.onFollowChanged(FollowChangedEvent.unfollowed(7L, 8L));
+        assertFalse(graph.follows(7, 8));
+        assertEquals(0, graph.followerCount(8));
+    }
+
+    @Test
+    void rebuildReplacesTheGraphWithTheStoredEdges() {
+        graph.addEdge(9, 10);
+        when(userRepository.findAllFollowEdges()).thenReturn(List.of(
+                new FollowEdge(1L, 2L), new FollowEdge(3L, 2L), new FollowEdge(2L, 1L)));
+
+        graph.rebuild();
+
+        assertFalse(graph.follows(9, 10));
+        assertArrayEquals(new long[]{1, 3}, graph.followers(2));
+        assertArrayEquals(new long[]{1}, graph.following(2));
+        assertArrayEquals(new long[]{2}, graph.followers(1));
+    }
+
+    @Test
+    void readersNeverSeeAPartlyRebuiltGraph() throws Exception {
+        List<FollowEdge> edges = new ArrayList<>();
+        for (long follower = 1; follower <= 20_000; follower++) {
+            edges.add(new FollowEdge(follower, follower + 1));
+        }
+        when(userRepository.findAllFollowEdges()).thenReturn(edges);
+        graph.rebuild();
+
+        AtomicBoolean rebuilding = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (rebuilding.get()) {
+                if (!graph.follows(20_000, 20_001)) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 50; i++) {
+            graph.rebuild();
+        }
+        rebuilding.set(false);
+        reader.join();
+
+        assertEquals(0, misses.get());
+    }
+}
@@ -0,0 +1,107 @@
+package com.nidorbrotkiv.backend.geo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReverseGeocoderTest {
+    private static final int PLACES = 2000;
+    private static final int MAX_SEARCH_RING = 20;
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, float[]> coordinates = new HashMap<>();
+    private ReverseGeocoder geocoder;
+
+    @BeforeEach
+    void load() throws IOException {
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < PLACES; i++) {
+            // A third of the places are north of 80 degrees and a third are close to the antimeridian.
+            double latitude = i % 3 == 0 ? 80 + random.nextDouble() * 10 : random.nextDouble() * 160 - 80;
+            double longitude = i % 3 == 1 ? 179 + random.nextDouble() * 2 : random.nextDouble() * 360 - 180;
+            addPlace(lines, "Place " + i, latitude, longitude >= 180 ? longitude - 360 : longitude);
+        }
+        addPlace(lines, "Longyearbyen", 78.22, 15.65);
+        lines.add("1\tNot a town\tNot a town\t\t10.0\t10.0\tH\tLK\tSE");
+        Path dataset = directory.resolve("places.txt");
+        Files.write(dataset, lines, StandardCharsets.UTF_8);
+
+        geocoder = new ReverseGeocoder(dataset.toString(), "");
+        geocoder.load();
+    }
+
+    @Test
+    void findsTheNearestPlace() {
+        Random random = new Random(11);
+        for (int i = 0; i < 1000; i++) {
+            double latitude = i % 4 == 0 ? 89 + random.nextDouble() : random.nextDouble() * 180 - 90;
+            double longitude = i % 4 == 1 ? (random.nextBoolean() ? 179.9 : -179.9) : random.nextDouble() * 360 - 180;
+            Place found = geocoder.findNearest(latitude, longitude).orElse(null);
+            double expected = nearestSearchedDistance(latitude, longitude);
+            if (found == null) {
+                assertEquals(Double.MAX_VALUE, expected, latitude + "," + longitude);
+                continue;
+            }
+            float[] place = coordinates.get(found.name());
+            assertEquals(expected, distance(latitude, longitude, place[0], place[1]), 1e-9, latitude + "," + longitude);
+        }
+    }
+
+    @Test
+    void readsNameAndCountry() {
+        Place place = geocoder.findNearest(78.2, 15.6).orElseThrow();
+
+        assertEquals("Longyearbyen", place.name());
+        assertEquals("SJ", place.countryCode());
+    }
+
+    private void addPlace(List<String> lines, String name, double latitude, double longitude) {
+        coordinates.put(name, new float[]{(float) latitude, (float) longitude});
+        String country = name.equals("Longyearbyen") ? "SJ" : "XX";
+        lines.add(coordinates.size() + "\t" + name + "\t" + name + "\t\t" + (float) latitude + "\t" + (float) longitude
+                + "\tP\tPPL\t" + country);
+    }
+
+    // The nearest place in the cells the geocoder searches: up to MAX_SEARCH_RING cells away in either direction.
+    private double nearestSearchedDistance(double latitude, double longitude) {
+        double best = Double.MAX_VALUE;
+        for (float[] place : coordinates.values()) {
+            int columns = Math.floorMod(column(place[1]) - column(longitude), 720);
+            if (Math.abs(row(place[0]) - row(latitude)) <= MAX_SEARCH_RING
+                    && Math.min(columns, 720 - columns) <= MAX_SEARCH_RING) {
+                best = Math.min(best, distance(latitude, longitude, place[0], place[1]));
+            }
+        }
+        return best;
+    }
+
+    private static int row(double latitude) {
+        return Math.min(359, Math.max(0, (int) Math.floor((latitude + 90) / 0.5)));
+    }
+
+    private static int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / 0.5), 720);
+    }
+
+    // The geocoder's own metric: degrees, with longitude scaled at the latitude of the query.
+    private static double distance(double latitude, double longitude, float placeLatitude, float placeLongitude) {
+        double dLat = placeLatitude - latitude;
+        double dLon = Math.IEEEremainder(placeLongitude - longitude, 360) * Math.cos(Math.toRadians(latitude));
+        return Math.sqrt(dLat * dLat + dLon * dLon);
+    }
+}
@@ -0,0 +1,132 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DirectUploadTest {
+    private static final String OWNER = "owner@example.com";
+    private static final String OTHER = "other@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private long markerId;
+
+    @BeforeEach
+    void createMarker() {
+        User owner = userRepository.findByEmail(OWNER).orElseGet(() -> createUser(OWNER));
+        userRepository.findByEmail(OTHER).orElseGet(() -> createUser(OTHER));
+        Marker marker = new Marker();
+        marker.setUser(owner);
+        marker.setTitle("Uploads");
+        marker.setLatitude(59.3);
+        marker.setLongitude(18.1);
+        markerId = markerRepository.save(marker).getId();
+    }
+
+    @Test
+    void ownerUploadsDirectlyAndFinalizes() throws Exception {
+        String response = mockMvc.perform(as(OWNER, post("/api/markers/{markerId}/images/uploads", markerId)
+                        .param("contentType", "image/png")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode upload = objectMapper.readTree(response);
+        String imageName = upload.get("imageName").asText();
+
+        URI uploadUrl = URI.create(upload.get("url").asText());
+        mockMvc.perform(put(uploadUrl.getPath() + "?" + uploadUrl.getQuery())
+                        .contentType("image/png")
+                        .content(png()))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(OWNER, post("/api/markers/{markerId}/images/uploads/{imageName}", markerId, imageName)))
+                .andExpect(status().isOk());
+
+        assertTrue(imageRepository.findFirstByMarkerIdAndUrl(markerId,
+                upload.get("url").asText().substring(0, upload.get("url").asText().indexOf('?'))).isPresent());
+    }
+
+    @Test
+    void otherUsersCannotChangeTheImages() throws Exception {
+        String imageName = UUID.randomUUID().toString();
+
+        mockMvc.perform(as(OTHER, post("/api/markers/{markerId}/images/uploads", markerId)
+                        .param("contentType", "image/png")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(OTHER, post("/api/markers/{markerId}/images/uploads/{imageName}", markerId, imageName)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(OTHER, delete("/api/markers/images")
+                        .param("imageUrl", "http://localhost:8080/blobs/geo-diary-images/" + imageName)
+                        .param("markerId", String.valueOf(markerId))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void imageDeletionRequiresTheMarker() throws Exception {
+        mockMvc.perform(as(OWNER, delete("/api/markers/images")
+                        .param("imageUrl", "http://localhost:8080/blobs/geo-diary-images/missing")))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, imageRepository.findRowsByMarkerIdIn(List.of(markerId)).size());
+    }
+
+    private User createUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        return userRepository.save(user);
+    }
+
+    private static MockHttpServletRequestBuilder as(String email, MockHttpServletRequestBuilder request) {
+        UserDetails details = org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("")
+                .authorities("USER")
+                .build();
+        return request.requestAttr(RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME,
+                new SecurityContextImpl(new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities())));
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
+    }
+}
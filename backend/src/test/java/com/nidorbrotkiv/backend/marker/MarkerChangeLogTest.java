@@ -0,0 +1,51 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MarkerChangeLogTest {
+    private static final long REMOVED_MARKER_ID = -1;
+
+    @Autowired
+    private MarkerChangeLog changeLog;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChangeCounterRepository counterRepository;
+
+    @Autowired
+    private MarkerTombstoneRepository tombstoneRepository;
+
+    @Test
+    void pruningTombstonesDoesNotLowerTheFeedVersion() {
+        User user = new User();
+        user.setEmail("pruned@example.com");
+        user.setName("Pruned");
+        user = userRepository.save(user);
+        ChangeCounter counter = counterRepository.findById(1L).orElseThrow();
+        long version = counter.getVersion() + 1;
+        counter.setVersion(version);
+        counterRepository.save(counter);
+        tombstoneRepository.save(new MarkerTombstone(REMOVED_MARKER_ID, user.getId(), version,
+                Instant.now().minus(Duration.ofDays(365))));
+
+        long before = changeLog.feedVersion(user.getId());
+        changeLog.pruneTombstones();
+
+        assertTrue(tombstoneRepository.findById(REMOVED_MARKER_ID).isEmpty());
+        // The client still holding the old version must not get a 304 for a list that lost the tombstone.
+        assertTrue(changeLog.feedVersion(user.getId()) >= before);
+        assertTrue(changeLog.needsReset(user.getId(), before - 1));
+    }
+}
@@ -0,0 +1,83 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class MarkerClusterIndexTest {
+    private static final long VIEWER = 1;
+    private static final long FOLLOWED = 2;
+    private static final long STRANGER = 3;
+    private static final BoundingBox WORLD = new BoundingBox(-90, -180, 90, 180);
+
+    private final MarkerClusterIndex index = new MarkerClusterIndex(mock(MarkerRepository.class));
+
+    @BeforeEach
+    void fill() {
+        index.put(new MarkerLocation(1L, VIEWER, 59.32, 18.06, true));
+        index.put(new MarkerLocation(2L, VIEWER, 59.33, 18.07, false));
+        index.put(new MarkerLocation(3L, FOLLOWED, 59.34, 18.08, true));
+        index.put(new MarkerLocation(4L, FOLLOWED, 59.35, 18.09, false));
+        index.put(new MarkerLocation(5L, FOLLOWED, -16.5, 179.9, true));
+        index.put(new MarkerLocation(6L, FOLLOWED, -16.5, -179.9, true));
+        index.put(new MarkerLocation(7L, STRANGER, 59.36, 18.1, true));
+    }
+
+    @Test
+    void countsOwnMarkersAndFollowedPublicMarkersAtEveryZoom() {
+        for (int zoom = 0; zoom <= MarkerClusterIndex.MAX_ZOOM; zoom++) {
+            int total = index.findClusters(zoom, WORLD, VIEWER, new long[]{FOLLOWED}).stream()
+                    .mapToInt(MarkerCluster::count)
+                    .sum();
+            assertEquals(5, total, "zoom " + zoom);
+        }
+    }
+
+    @Test
+    void mergesNearbyMarkersIntoOneCentroid() {
+        List<MarkerCluster> clusters = index.findClusters(2, new BoundingBox(50, 10, 65, 25), VIEWER, new long[]{FOLLOWED});
+
+        assertEquals(1, clusters.size());
+        MarkerCluster cluster = clusters.get(0);
+        assertEquals(3, cluster.count());
+        assertEquals((59.32 + 59.33 + 59.34) / 3, cluster.latitude(), 1e-9);
+        assertEquals((18.06 + 18.07 + 18.08) / 3, cluster.longitude(), 1e-9);
+        assertNull(cluster.markerId());
+    }
+
+    @Test
+    void singleMarkersCarryTheirId() {
+        List<MarkerCluster> clusters = index.findClusters(MarkerClusterIndex.MAX_ZOOM, new BoundingBox(59, 18, 60, 19),
+                VIEWER, new long[]{});
+
+        assertEquals(List.of(1L, 2L), clusters.stream().map(MarkerCluster::markerId).sorted().toList());
+    }
+
+    @Test
+    void findsClustersAcrossTheAntimeridian() {
+        BoundingBox fiji = new BoundingBox(-20, 179, -10, -179);
+        for (int zoom : new int[]{0, 4, MarkerClusterIndex.MAX_ZOOM}) {
+            int total = index.findClusters(zoom, fiji, VIEWER, new long[]{FOLLOWED}).stream()
+                    .mapToInt(MarkerCluster::count)
+                    .sum();
+            assertEquals(2, total, "zoom " + zoom);
+        }
+    }
+
+    @Test
+    void followsMovedAndRemovedMarkers() {
+        index.put(new MarkerLocation(3L, FOLLOWED, 59.34, 18.08, false));
+        index.remove(1L);
+
+        int total = index.findClusters(0, WORLD, VIEWER, new long[]{FOLLOWED}).stream()
+                .mapToInt(MarkerCluster::count)
+                .sum();
+        assertEquals(3, total);
+    }
+}
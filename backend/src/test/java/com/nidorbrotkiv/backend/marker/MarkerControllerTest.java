@@ -0,0 +1,118 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MarkerControllerTest {
+    private static final String OWNER = "owner@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    @Autowired
+    private MarkerClusterIndex clusterIndex;
+
+    @Test
+    void acceptsBothDirections() throws Exception {
+        owner();
+
+        for (String direction : new String[]{"asc", "desc", "DESC"}) {
+            mockMvc.perform(as(OWNER, get("/api/markers/user/page").param("sort", "title").param("direction", direction)))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void rejectsUnknownDirection() throws Exception {
+        mockMvc.perform(as(OWNER, get("/api/markers/user/page").param("direction", "sideways")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void returnsTheClustersInView() throws Exception {
+        User owner = owner();
+        for (double offset : new double[]{0, 0.01, 0.02}) {
+            Marker marker = new Marker();
+            marker.setUser(owner);
+            marker.setTitle("Table Mountain");
+            marker.setLatitude(-33.96 + offset);
+            marker.setLongitude(18.4 + offset);
+            clusterIndex.put(MarkerLocation.of(markerRepository.save(marker)));
+        }
+
+        mockMvc.perform(as(OWNER, get("/api/markers/clusters").param("zoom", "3").param("bbox", "-35,17,-33,20")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].latitude", closeTo(-33.95, 1e-9), Double.class));
+        mockMvc.perform(as(OWNER, get("/api/markers/clusters").param("zoom", "16").param("bbox", "-35,17,-33,20")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].markerId").isNumber());
+    }
+
+    @Test
+    void rejectsAnInvalidBoundingBox() throws Exception {
+        mockMvc.perform(as(OWNER, get("/api/markers/clusters").param("zoom", "3").param("bbox", "10,20,5")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void returnsTheCreatedMarkerWithItsWeather() throws Exception {
+        owner();
+
+        mockMvc.perform(as(OWNER, post("/api/markers/user")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"latitude\": 59.33, \"longitude\": 18.07}")))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").isNumber())
+                .andExpect(jsonPath("$.latitude", closeTo(59.33, 1e-9), Double.class))
+                .andExpect(jsonPath("$.user.email").value(OWNER))
+                .andExpect(jsonPath("$.weatherInfo.temp").isNumber())
+                .andExpect(jsonPath("$.weatherInfo.icon").value("01d"))
+                .andExpect(jsonPath("$.weatherInfo.dt").isNumber());
+    }
+
+    private User owner() {
+        return userRepository.findByEmail(OWNER).orElseGet(() -> {
+            User owner = new User();
+            owner.setEmail(OWNER);
+            owner.setName(OWNER);
+            return userRepository.save(owner);
+        });
+    }
+
+    private static MockHttpServletRequestBuilder as(String email, MockHttpServletRequestBuilder request) {
+        UserDetails details = org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("")
+                .authorities("USER")
+                .build();
+        return request.requestAttr(RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME,
+                new SecurityContextImpl(new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities())));
+    }
+}
@@ -0,0 +1,90 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nidorbrotkiv.backend.follow.FollowGraph;
+import com.nidorbrotkiv.backend.user.UserCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class MarkerEventStreamTest {
+    private static final long SEND_TIMEOUT_MILLIS = 100;
+
+    // A single worker, so the stalled subscriber pins the whole pool.
+    private final MarkerEventStream stream = new MarkerEventStream(mock(UserCache.class), mock(MarkerService.class),
+            mock(FollowGraph.class), new ObjectMapper(), 1, 10, 60_000, 5, SEND_TIMEOUT_MILLIS);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        stream.shutdown();
+    }
+
+    @Test
+    void stalledSubscriberDoesNotDelayOthers() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        stream.subscribe(1, stalled);
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+
+        RecordingEmitter healthy = new RecordingEmitter();
+        stream.subscribe(2, healthy);
+        Thread.sleep(2 * SEND_TIMEOUT_MILLIS);
+        stream.closeStalledSubscribers();
+
+        assertTrue(healthy.received.await(1, TimeUnit.SECONDS));
+        assertEquals(1, stream.subscriberCount());
+
+        // The stalled stream is completed once its write returns, not while it is blocked.
+        assertEquals(1, stalled.completed.getCount());
+        stalled.release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscriberWithinSendTimeoutIsKept() throws Exception {
+        RecordingEmitter healthy = new RecordingEmitter();
+        stream.subscribe(1, healthy);
+        assertTrue(healthy.received.await(1, TimeUnit.SECONDS));
+
+        stream.closeStalledSubscribers();
+
+        assertEquals(1, stream.subscriberCount());
+    }
+
+    private static class StalledEmitter extends SseEmitter {
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        // Holds the emitter's lock while blocked, like a write to a client that stopped reading.
+        @Override
+        public synchronized void send(SseEventBuilder builder) {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch received = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            received.countDown();
+        }
+    }
+}
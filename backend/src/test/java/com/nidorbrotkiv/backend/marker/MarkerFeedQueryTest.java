@@ -0,0 +1,191 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nidorbrotkiv.backend.feed.FeedEntryRepository;
+import com.nidorbrotkiv.backend.user.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Nulls sort high like they do in PostgreSQL, so the plans match the ones the production database makes.
+@DataJpaTest(properties = {
+        "cors.allowed.origins=http://localhost",
+        "spring.datasource.url=jdbc:h2:mem:feed-query;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MarkerFeedQueryTest {
+    private static final int MARKERS_PER_USER = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private FeedEntryRepository feedEntryRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void feedStatementCountDoesNotGrowWithFollowedUsers() throws Exception {
+        long fewFollowed = countFeedStatements("few", 2);
+        long manyFollowed = countFeedStatements("many", 12);
+
+        assertEquals(fewFollowed, manyFollowed);
+    }
+
+    @Test
+    void feedContainsOwnedAndFollowedPublicMarkers() {
+        User reader = createFeed("content", 3);
+
+        List<MarkerRow> feed = markerRepository.findFeedRowsByUserId(reader.getId());
+
+        // Every user owns MARKERS_PER_USER markers, the last of which is private.
+        assertEquals(MARKERS_PER_USER + 3 * (MARKERS_PER_USER - 1), feed.size());
+    }
+
+    @Test
+    void keysetPagesCoverTheFeedInOrder() {
+        long readerId = createFeed("paged", 3).getId();
+        int feedSize = markerRepository.findFeedRowsByUserId(readerId).size();
+
+        for (MarkerSort sort : MarkerSort.values()) {
+            for (boolean ascending : new boolean[]{true, false}) {
+                List<MarkerView> visited = new ArrayList<>();
+                MarkerCursor cursor = null;
+                List<MarkerRow> page;
+                do {
+                    page = markerRepository.findFeedPage(readerId, sort, ascending, cursor, 2);
+                    page.forEach(row -> visited.add(MarkerView.of(row, List.of())));
+                    cursor = page.isEmpty() ? null : MarkerCursor.decode(
+                            MarkerCursor.after(sort, ascending, visited.get(visited.size() - 1)).encode());
+                } while (!page.isEmpty());
+
+                assertEquals(feedSize, visited.size());
+                assertEquals(feedSize, new HashSet<>(visited.stream().map(MarkerView::id).toList()).size());
+                for (int i = 1; i < visited.size(); i++) {
+                    int order = compare(sort, visited.get(i - 1), visited.get(i));
+                    assertTrue(ascending ? order < 0 : order > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sortedPagesAreReadInIndexOrder() {
+        // The page order without the feed filter must not need a sort step of its own. H2 only reads indexes
+        // forwards; PostgreSQL reads the same index backwards for descending pages, where nulls come first.
+        assertTrue(explain("SELECT m.id FROM marker m ORDER BY m.title ASC NULLS LAST, m.id ASC FETCH FIRST 21 ROWS ONLY")
+                .contains("index sorted"));
+        assertTrue(explain("SELECT w.id FROM weather_info w ORDER BY w.dt ASC NULLS LAST FETCH FIRST 21 ROWS ONLY")
+                .contains("index sorted"));
+        assertFalse(explain("SELECT m.id FROM marker m ORDER BY COALESCE(m.title, '') ASC, m.id ASC FETCH FIRST 21 ROWS ONLY")
+                .contains("index sorted"));
+    }
+
+    private String explain(String sql) {
+        return entityManager.getEntityManager().createNativeQuery("EXPLAIN " + sql).getSingleResult().toString();
+    }
+
+    // Missing keys sort after every other key, as they do in the indexes.
+    @SuppressWarnings("unchecked")
+    private static int compare(MarkerSort sort, MarkerView first, MarkerView second) {
+        if (sort.hasSortKey()) {
+            Object firstKey = sort.sortKeyOf(first);
+            Object secondKey = sort.sortKeyOf(second);
+            int byKey = firstKey == null ? (secondKey == null ? 0 : 1)
+                    : secondKey == null ? -1 : ((Comparable<Object>) firstKey).compareTo(secondKey);
+            if (byKey != 0) {
+                return byKey;
+            }
+        }
+        return first.id().compareTo(second.id());
+    }
+
+    private long countFeedStatements(String prefix, int followedUsers) throws Exception {
+        User reader = createFeed(prefix, followedUsers);
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<MarkerRow> rows = markerRepository.findFeedRowsByUserId(reader.getId());
+        List<ImageRow> images = imageRepository.findRowsByMarkerIdIn(rows.stream().map(MarkerRow::id).toList());
+        objectMapper.writeValueAsString(MarkerView.assemble(rows, images));
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User createFeed(String prefix, int followedUsers) {
+        User reader = createUser(prefix + "-reader@example.com");
+        List<Marker> markers = new ArrayList<>(createMarkers(reader, reader));
+        for (int i = 0; i < followedUsers; i++) {
+            User followed = createUser(prefix + "-followed-" + i + "@example.com");
+            followed.getFollowers().add(reader);
+            reader.getFollowing().add(followed);
+            markers.addAll(createMarkers(followed, reader));
+        }
+        entityManager.flush();
+        markers.forEach(marker -> feedEntryRepository.fanOutMarker(marker.getId()));
+        entityManager.clear();
+        return reader;
+    }
+
+    private User createUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        return entityManager.persist(user);
+    }
+
+    private List<Marker> createMarkers(User owner, User viewer) {
+        List<Marker> markers = new ArrayList<>();
+        for (int i = 0; i < MARKERS_PER_USER; i++) {
+            Marker marker = new Marker();
+            marker.setUser(owner);
+            // The first marker of every user has neither a title nor a date, to page across missing sort keys.
+            marker.setTitle(i == 0 ? null : owner.getEmail() + " " + i);
+            marker.setLatitude(59.0 + i);
+            marker.setLongitude(18.0 + i);
+            marker.setIsPublic(i < MARKERS_PER_USER - 1);
+
+            WeatherInfo weatherInfo = new WeatherInfo();
+            weatherInfo.setDt(i == 0 ? null : 1_700_000_000L + i);
+            weatherInfo.setLocation("Stockholm");
+            marker.setWeatherInfo(weatherInfo);
+
+            markers.add(entityManager.persist(marker));
+
+            // Children are persisted on their own; the collections are populated when the feed is read back.
+            for (int j = 0; j < 2; j++) {
+                Image image = new Image();
+                image.setUrl("https://example.com/" + owner.getEmail() + "/" + i + "/" + j);
+                image.setMarker(marker);
+                entityManager.persist(image);
+            }
+
+            MarkerViewer markerViewer = new MarkerViewer();
+            markerViewer.setMarker(marker);
+            markerViewer.setUser(viewer);
+            entityManager.persist(markerViewer);
+        }
+        return markers;
+    }
+}
@@ -0,0 +1,70 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.config.CustomUserDetailsService;
+import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MarkerSearchIndexTest {
+    private static final String OWNER = "owner@example.com";
+
+    @Autowired
+    private MarkerSearchIndex searchIndex;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    @Test
+    void renamedOwnerIsSearchable() {
+        userDetailsService.loadUserByDetails(OWNER, "Astrid Lindqvist", null);
+        User owner = userRepository.findByEmail(OWNER).orElseThrow();
+        Marker marker = new Marker();
+        marker.setUser(owner);
+        marker.setTitle("Harbour");
+        marker.setLatitude(57.7);
+        marker.setLongitude(11.9);
+        long markerId = markerRepository.save(marker).getId();
+        searchIndex.reindex(List.of(markerId));
+        assertTrue(searchIndex.search("Lindqvist", null, location -> true).contains(markerId));
+
+        userDetailsService.loadUserByDetails(OWNER, "Astrid Bergström", null);
+
+        assertTrue(searchIndex.search("Bergström", null, location -> true).contains(markerId));
+        assertFalse(searchIndex.search("Lindqvist", null, location -> true).contains(markerId));
+    }
+
+    @Test
+    void reindexDropsDeletedMarkers() {
+        User owner = userRepository.findByEmail(OWNER).orElseGet(() -> {
+            User user = new User();
+            user.setEmail(OWNER);
+            user.setName(OWNER);
+            return userRepository.save(user);
+        });
+        Marker marker = new Marker();
+        marker.setUser(owner);
+        marker.setTitle("Lighthouse");
+        long markerId = markerRepository.save(marker).getId();
+        searchIndex.reindex(List.of(markerId));
+        assertTrue(searchIndex.search("Lighthouse", null, location -> true).contains(markerId));
+
+        markerRepository.deleteById(markerId);
+        searchIndex.reindex(List.of(markerId));
+
+        assertFalse(searchIndex.search("Lighthouse", null, location -> true).contains(markerId));
+    }
+}
@@ -0,0 +1,149 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.geo.BoundingBox;
+import com.nidorbrotkiv.backend.geo.GreatCircle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class MarkerSpatialIndexTest {
+    private static final int MARKERS = 5000;
+
+    private final MarkerSpatialIndex index = new MarkerSpatialIndex(mock(MarkerRepository.class));
+    private final List<MarkerLocation> all = new ArrayList<>();
+
+    @BeforeEach
+    void fill() {
+        Random random = new Random(42);
+        for (long id = 1; id <= MARKERS; id++) {
+            // Half of the markers are spread over the globe and half are packed around Stockholm.
+            boolean packed = id % 2 == 0;
+            double latitude = packed ? 59 + random.nextDouble() : random.nextDouble() * 180 - 90;
+            double longitude = packed ? 18 + random.nextDouble() : random.nextDouble() * 360 - 180;
+            add(new MarkerLocation(id, id % 7, latitude, longitude, id % 3 != 0));
+        }
+        // Markers on the edges of the grid.
+        add(new MarkerLocation(-1L, 0L, 90.0, 180.0, true));
+        add(new MarkerLocation(-2L, 0L, -90.0, -180.0, true));
+        add(new MarkerLocation(-3L, 0L, 10.0, 179.99, true));
+        add(new MarkerLocation(-4L, 0L, 10.0, -179.99, true));
+    }
+
+    @Test
+    void findsTheMarkersInsideBoxes() {
+        List<BoundingBox> boxes = List.of(
+                new BoundingBox(59.2, 18.1, 59.4, 18.3),
+                new BoundingBox(-10, -10, 10, 10),
+                new BoundingBox(-90, -180, 90, 180),
+                new BoundingBox(89, 179, 90, 180),
+                new BoundingBox(-90, -180, -89, -179));
+        for (BoundingBox box : boxes) {
+            assertEquals(bruteForce(box), ids(index.findWithin(box, location -> true)), box.toString());
+        }
+    }
+
+    @Test
+    void findsTheMarkersInsideBoxesCrossingTheAntimeridian() {
+        List<BoundingBox> boxes = List.of(
+                new BoundingBox(5, 179.5, 15, -179.5),
+                new BoundingBox(-60, 120, 60, -120),
+                new BoundingBox(-90, 0, 90, -0.0001));
+        for (BoundingBox box : boxes) {
+            assertEquals(bruteForce(box), ids(index.findWithin(box, location -> true)), box.toString());
+        }
+        assertTrue(ids(index.findWithin(boxes.get(0), location -> true)).containsAll(Set.of(-3L, -4L)));
+    }
+
+    @Test
+    void appliesTheFilter() {
+        BoundingBox box = new BoundingBox(58, 17, 61, 20);
+        Set<Long> expected = all.stream()
+                .filter(location -> box.contains(location.latitude(), location.longitude()) && location.ownerId() == 2)
+                .map(MarkerLocation::id)
+                .collect(Collectors.toSet());
+
+        assertEquals(expected, ids(index.findWithin(box, location -> location.ownerId() == 2)));
+    }
+
+    @Test
+    void followsMovedAndRemovedMarkers() {
+        BoundingBox stockholm = new BoundingBox(59, 18, 60, 19);
+        BoundingBox tokyo = new BoundingBox(35, 139, 36, 140);
+        index.put(new MarkerLocation(2L, 2L, 35.5, 139.5, true));
+        index.remove(4L);
+
+        Set<Long> inStockholm = ids(index.findWithin(stockholm, location -> true));
+        assertFalse(inStockholm.contains(2L) || inStockholm.contains(4L));
+        assertTrue(ids(index.findWithin(tokyo, location -> true)).contains(2L));
+        assertEquals(MARKERS + 3, index.size());
+    }
+
+    @Test
+    void findsTheNearestMarkers() {
+        Random random = new Random(3);
+        for (long id = 1; id <= 500; id++) {
+            // Markers around both poles and along the antimeridian.
+            double latitude = (id % 2 == 0 ? 1 : -1) * (85 + random.nextDouble() * 5);
+            add(new MarkerLocation(10_000 + id, id % 7, latitude, random.nextDouble() * 360 - 180, true));
+            add(new MarkerLocation(20_000 + id, id % 7, random.nextDouble() * 160 - 80,
+                    (id % 2 == 0 ? 179.5 : -180) + random.nextDouble() / 2, true));
+        }
+        double[][] points = {
+                {89.99, 0}, {-89.99, 120}, {90, -180}, {88.7, 179.99}, {10, 179.99}, {-40, -179.99},
+                {59.3, 18.1}, {0, 0}, {-75, 60}};
+        List<double[]> queries = new ArrayList<>(List.of(points));
+        for (int i = 0; i < 100; i++) {
+            queries.add(new double[]{random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180});
+        }
+
+        for (double[] query : queries) {
+            for (int k : new int[]{1, 5, 25}) {
+                for (double maxKm : new double[]{50, 1000, GreatCircle.HALF_CIRCUMFERENCE_KM}) {
+                    Predicate<MarkerLocation> filter = location -> location.ownerId() != 3;
+                    List<Double> expected = all.stream()
+                            .filter(filter)
+                            .map(location -> GreatCircle.distanceKm(query[0], query[1], location.latitude(), location.longitude()))
+                            .filter(distance -> distance <= maxKm)
+                            .sorted()
+                            .limit(k)
+                            .toList();
+                    List<Double> found = index.findNearest(query[0], query[1], k, maxKm, filter).stream()
+                            .map(MarkerDistance::distanceKm)
+                            .toList();
+                    String description = query[0] + "," + query[1] + " k=" + k + " maxKm=" + maxKm;
+                    assertEquals(expected.size(), found.size(), description);
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i), found.get(i), 1e-9, description);
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(MarkerLocation location) {
+        all.add(location);
+        index.put(location);
+    }
+
+    private Set<Long> bruteForce(BoundingBox box) {
+        return all.stream()
+                .filter(location -> box.contains(location.latitude(), location.longitude()))
+                .map(MarkerLocation::id)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Long> ids(List<MarkerLocation> locations) {
+        return locations.stream().map(MarkerLocation::id).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,182 @@
+package com.nidorbrotkiv.backend.marker;
+
+import com.nidorbrotkiv.backend.bucket.BlobDeletionService;
+import com.nidorbrotkiv.backend.bucket.LocalBlobStore;
+import com.nidorbrotkiv.backend.bucket.PendingBlobDeletionRepository;
+import com.nidorbrotkiv.backend.bucket.StoredBlobRepository;
+import com.nidorbrotkiv.backend.bucket.StoredBlobService;
+import com.nidorbrotkiv.backend.user.User;
+import com.nidorbrotkiv.backend.user.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sweeps a bucket in its own directory with known referenced, recent and orphaned objects. The objects get their
+ * own base URL, so images stored by other tests in the shared database are outside the swept prefix.
+ */
+@SpringBootTest
+class OrphanedImageSweeperTest {
+    private static final String BUCKET = MarkerService.BUCKET_NAME;
+    private static final int CHUNK_SIZE = 2;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private MarkerRepository markerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StoredBlobService storedBlobService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private PendingBlobDeletionRepository pendingBlobDeletionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path root;
+
+    private LocalBlobStore blobStore;
+    private BlobDeletionService blobDeletionService;
+    private final Set<String> orphans = new TreeSet<>();
+    private final Set<String> kept = new TreeSet<>();
+
+    @BeforeEach
+    void createBucket() throws Exception {
+        blobStore = new LocalBlobStore(root.toString(), "http://sweeper-" + UUID.randomUUID() + "/blobs", "key");
+        blobDeletionService = new BlobDeletionService(pendingBlobDeletionRepository, storedBlobRepository, blobStore,
+                transactionTemplate);
+
+        User owner = new User();
+        owner.setEmail("sweeper-" + UUID.randomUUID() + "@example.com");
+        owner.setName("Sweeper");
+        Marker marker = new Marker();
+        marker.setUser(userRepository.save(owner));
+        marker.setTitle("Swept");
+        marker = markerRepository.save(marker);
+
+        // Names are chosen so that referenced, recent and orphaned objects alternate in the listing.
+        Image image = new Image();
+        image.setUrl(store("a-original", true));
+        image.setThumbnailUrl(store("c-thumbnail", true));
+        image.setMediumUrl(store("e-medium", true));
+        image.setMarker(marker);
+        imageRepository.save(image);
+        orphans.add(name(store("b-orphan", true)));
+        kept.add(name(store("d-recent", false)));
+        orphans.add(name(store("f-orphan", true)));
+        kept.add(name(store("g-recent", false)));
+        orphans.add(name(store("h-orphan", true)));
+        kept.addAll(List.of("a-original", "c-thumbnail", "e-medium"));
+    }
+
+    @AfterEach
+    void stopDeletions() {
+        blobDeletionService.shutdown();
+    }
+
+    @Test
+    void dryRunDeletesNothing() {
+        sweeper(true, Long.MAX_VALUE).sweep();
+
+        assertEquals(union(orphans, kept), remaining());
+    }
+
+    @Test
+    void deletesOnlyOldUnreferencedObjects() throws Exception {
+        sweeper(false, Long.MAX_VALUE).sweep();
+
+        awaitRemaining(kept);
+    }
+
+    @Test
+    void resumesWhereThePreviousRunStopped() throws Exception {
+        OrphanedImageSweeper sweeper = sweeper(false, 3);
+
+        sweeper.sweep();
+        // The first run covers a-original, b-orphan and c-thumbnail.
+        awaitRemaining(union(kept, Set.of("f-orphan", "h-orphan")));
+        sweeper.sweep();
+        awaitRemaining(union(kept, Set.of("h-orphan")));
+        sweeper.sweep();
+        awaitRemaining(kept);
+    }
+
+    @Test
+    void leakedStoredBlobEntryIsRemovedWithItsObject() throws Exception {
+        storedBlobRepository.insertIfAbsent(BUCKET, "f-orphan", "image/png", true, Instant.now().minus(Duration.ofDays(2)));
+
+        sweeper(false, Long.MAX_VALUE).sweep();
+
+        awaitRemaining(kept);
+        assertFalse(storedBlobRepository.existsByBucketNameAndName(BUCKET, "f-orphan"));
+        // A new upload of the same content has to store it again.
+        assertTrue(storedBlobService.addReference(BUCKET, "f-orphan", "image/png"));
+        storedBlobService.releaseReference(BUCKET, "f-orphan");
+    }
+
+    private OrphanedImageSweeper sweeper(boolean dryRun, long maxBlobsPerRun) {
+        return new OrphanedImageSweeper(blobStore, imageRepository, blobDeletionService, storedBlobService, dryRun,
+                24, CHUNK_SIZE, maxBlobsPerRun);
+    }
+
+    private String store(String name, boolean old) throws Exception {
+        String url = blobStore.uploadImageToBucket(BUCKET, new ByteArrayInputStream(new byte[]{1}), name, "image/png");
+        if (old) {
+            Files.setLastModifiedTime(blobStore.resolve(BUCKET, name), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        }
+        return url;
+    }
+
+    private static String name(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    private Set<String> remaining() {
+        Set<String> names = new TreeSet<>();
+        blobStore.listImages(BUCKET, "", 100).forEachRemaining(object -> names.add(object.name()));
+        return names;
+    }
+
+    // Deletions run after commit on the deletion service's own thread.
+    private void awaitRemaining(Set<String> expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!remaining().equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, remaining());
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> union = new TreeSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+}
@@ -0,0 +1,52 @@
+package com.nidorbrotkiv.backend.user;
+
+import com.nidorbrotkiv.backend.follow.FollowGraph;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class UserServiceTest {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FollowGraph followGraph;
+
+    @Test
+    void deleteUserRemovesItsFollowEdges() {
+        User fan = createUser("fan@example.com");
+        User deleted = createUser("deleted@example.com");
+        User followed = createUser("followed@example.com");
+        deleted.getFollowers().add(fan);
+        followed.getFollowers().add(deleted);
+        userRepository.save(deleted);
+        userRepository.save(followed);
+        followGraph.rebuild();
+        assertTrue(followGraph.follows(fan.getId(), deleted.getId()));
+        assertTrue(followGraph.follows(deleted.getId(), followed.getId()));
+
+        assertTrue(userService.deleteUser(deleted.getEmail()));
+
+        assertFalse(userRepository.findByEmail(deleted.getEmail()).isPresent());
+        assertEquals(0, followGraph.followerCount(deleted.getId()));
+        assertEquals(0, followGraph.followingCount(deleted.getId()));
+        assertArrayEquals(new long[0], followGraph.following(fan.getId()));
+        assertArrayEquals(new long[0], followGraph.followers(followed.getId()));
+    }
+
+    private User createUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setName(email);
+        return userRepository.save(user);
+    }
+}
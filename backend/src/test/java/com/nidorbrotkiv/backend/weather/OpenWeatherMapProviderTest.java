@@ -0,0 +1,74 @@
+package com.nidorbrotkiv.backend.weather;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class OpenWeatherMapProviderTest {
+    private static final String RESPONSE = """
+            {"main":{"temp":281.5},"weather":[{"icon":"04d","description":"broken clouds"}],"sys":{"country":"SE"}}""";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean stalled;
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/weather", exchange -> {
+            try (exchange) {
+                if (stalled) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/weather";
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void readsTheCurrentWeather() throws IOException {
+        WeatherReport report = new OpenWeatherMapProvider(url, "key", 2000, 2000).fetchCurrentWeather(59.3, 18.1);
+
+        assertEquals(281.5, report.temp());
+        assertEquals("04d", report.icon());
+        assertEquals("SE", report.country());
+        assertEquals("broken clouds", report.description());
+    }
+
+    @Test
+    void stalledProviderTimesOut() {
+        stalled = true;
+        OpenWeatherMapProvider provider = new OpenWeatherMapProvider(url, "key", 200, 200);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(IOException.class, () -> provider.fetchCurrentWeather(59.3, 18.1)));
+    }
+}
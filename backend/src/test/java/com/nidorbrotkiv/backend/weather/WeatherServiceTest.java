@@ -0,0 +1,103 @@
+package com.nidorbrotkiv.backend.weather;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherServiceTest {
+    private static final WeatherReport REPORT = new WeatherReport(281.5, "04d", "SE", "broken clouds");
+
+    @Test
+    void locationsInTheSameCellShareOneLookupOfTheCellCentre() {
+        List<double[]> calls = new ArrayList<>();
+        WeatherService service = new WeatherService((latitude, longitude) -> {
+            calls.add(new double[]{latitude, longitude});
+            return REPORT;
+        }, 0.1, 30, 100);
+
+        assertEquals(Optional.of(REPORT), service.getCurrentWeather(59.31, 18.02));
+        assertEquals(Optional.of(REPORT), service.getCurrentWeather(59.39, 18.08));
+
+        assertEquals(1, calls.size());
+        assertEquals(59.35, calls.get(0)[0], 1e-9);
+        assertEquals(18.05, calls.get(0)[1], 1e-9);
+    }
+
+    @Test
+    void neighbouringCellsAreLookedUpSeparately() {
+        AtomicInteger calls = new AtomicInteger();
+        WeatherService service = new WeatherService((latitude, longitude) -> {
+            calls.incrementAndGet();
+            return REPORT;
+        }, 0.1, 30, 100);
+
+        service.getCurrentWeather(59.31, 18.02);
+        service.getCurrentWeather(59.41, 18.02);
+        service.getCurrentWeather(-59.31, 18.02);
+
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void concurrentLookupsOfOneCellWaitForASingleProviderCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        WeatherService service = new WeatherService((latitude, longitude) -> {
+            calls.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return REPORT;
+        }, 0.1, 30, 100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<WeatherReport>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(() -> service.getCurrentWeather(59.31, 18.02)));
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (calls.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Optional<WeatherReport>> lookup : lookups) {
+                assertEquals(Optional.of(REPORT), lookup.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLookupsAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        WeatherService service = new WeatherService((latitude, longitude) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IOException("provider unavailable");
+            }
+            return REPORT;
+        }, 0.1, 30, 100);
+
+        assertTrue(service.getCurrentWeather(59.31, 18.02).isEmpty());
+        assertEquals(Optional.of(REPORT), service.getCurrentWeather(59.31, 18.02));
+        assertEquals(2, calls.get());
+    }
+}
@@ -1,6 +1,6 @@
 const nextConfig = {
   images: {
-    remotePatterns: [{ hostname: "openweathermap.org" }, { hostname: "storage.googleapis.com" }, { hostname: "lh3.googleusercontent.com"}, { hostname: "flagsapi.com"}],
+    remotePatterns: [{ hostname: "openweathermap.org" }, { hostname: "storage.googleapis.com" }, { hostname: "lh3.googleusercontent.com"}, { hostname: "flagsapi.com"}, { hostname: "localhost" }],
   },
 };
 
@@ -0,0 +1,8 @@
+import { relayGet } from "@/app/api/markers/relay";
+
+export const dynamic = "force-dynamic";
+
+export async function GET(request: Request): Promise<Response> {
+  const since = new URL(request.url).searchParams.get("since") ?? "0";
+  return relayGet(request, `/markers/changes?since=${encodeURIComponent(since)}`);
+}
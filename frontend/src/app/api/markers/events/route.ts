@@ -0,0 +1,31 @@
+import { getServerSession } from "next-auth";
+import { options } from "@/app/api/auth/[...nextauth]/options";
+import { BASE_API_URL } from "@/app/constants";
+
+export const dynamic = "force-dynamic";
+
+// EventSource cannot send the bearer token, so the browser subscribes here and the stream is relayed from the backend.
+export async function GET(request: Request): Promise<Response> {
+  const session = await getServerSession(options);
+  if (!session?.idToken) {
+    return new Response("Unauthorized", { status: 401 });
+  }
+  const response = await fetch(`${BASE_API_URL}/markers/events`, {
+    headers: {
+      Authorization: `Bearer ${session.idToken}`,
+      Accept: "text/event-stream",
+    },
+    cache: "no-store",
+    signal: request.signal,
+  });
+  if (!response.ok || !response.body) {
+    return new Response(null, { status: response.status });
+  }
+  return new Response(response.body, {
+    headers: {
+      "Content-Type": "text/event-stream",
+      "Cache-Control": "no-cache, no-transform",
+      Connection: "keep-alive",
+    },
+  });
+}
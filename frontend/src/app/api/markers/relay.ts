@@ -0,0 +1,36 @@
+import { getServerSession } from "next-auth";
+import { options } from "@/app/api/auth/[...nextauth]/options";
+import { BASE_API_URL } from "@/app/constants";
+
+const FORWARDED_RESPONSE_HEADERS = ["Content-Type", "ETag"];
+
+// The bearer token stays on the server, so browser reads of the backend go through here. Status, body and ETag are
+// passed on unchanged and nothing is kept between requests.
+export async function relayGet(request: Request, path: string, forwardedHeaders: string[] = []): Promise<Response> {
+  const session = await getServerSession(options);
+  if (!session?.idToken) {
+    return new Response("Unauthorized", { status: 401 });
+  }
+  const headers = new Headers({
+    Authorization: `Bearer ${session.idToken}`,
+    Accept: "application/json",
+  });
+  forwardedHeaders.forEach((name) => {
+    const value = request.headers.get(name);
+    if (value) {
+      headers.set(name, value);
+    }
+  });
+  const response = await fetch(`${BASE_API_URL}${path}`, { headers, cache: "no-store", signal: request.signal });
+  const responseHeaders = new Headers({ "Cache-Control": "no-store" });
+  FORWARDED_RESPONSE_HEADERS.forEach((name) => {
+    const value = response.headers.get(name);
+    if (value) {
+      responseHeaders.set(name, value);
+    }
+  });
+  return new Response(response.status === 304 ? null : response.body, {
+    status: response.status,
+    headers: responseHeaders,
+  });
+}
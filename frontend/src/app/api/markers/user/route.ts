@@ -0,0 +1,7 @@
+import { relayGet } from "@/app/api/markers/relay";
+
+export const dynamic = "force-dynamic";
+
+export async function GET(request: Request): Promise<Response> {
+  return relayGet(request, "/markers/user", ["If-None-Match"]);
+}
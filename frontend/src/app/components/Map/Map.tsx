@@ -13,7 +13,8 @@ import * as mapOperations from "@/app/utils/mapUtils";
 import "@/app/styles/mapStyles.css";
 import { toast } from "react-toastify";
 import useOutsideClick from "@/app/hooks/useOutsideClick";
-import { getMarkers, validateSessionToken } from "@/app/services/globalServices";
+import { validateSessionToken } from "@/app/services/globalServices";
+import { getMarkerChanges, getMarkers } from "@/app/services/markerSnapshotServices";
 import { useSwal } from "@/app/contexts/SwalContext";
 import DrawerMenu from "@/app/components/global/DrawerMenu";
 import { FontAwesomeIcon } from "@fortawesome/react-fontawesome";
@@ -21,7 +22,7 @@ import { faCrosshairs, faPlus, faXmark } from "@fortawesome/free-solid-svg-icons
 import Swal from "sweetalert2";
 import { useRouter } from "next/navigation";
 import { fetchUserCoordinates } from "@/app/utils/globalUtils";
-import { REGEX_FOR_SANITIZATION } from "@/app/constants";
+import { MARKER_POLL_INTERVAL_MS, REGEX_FOR_SANITIZATION, STREAM_READY_TIMEOUT_MS } from "@/app/constants";
 
 interface MapProps {
   markerId?: string;
@@ -52,6 +53,7 @@ const Map: React.FC<MapProps> = ({ markerId }) => {
   const timeoutIdRef = useRef<any>(null);
 
   const [markers, setMarkers] = useState<ExtendedMarker[]>([]);
+  const markersRef = useRef<ExtendedMarker[]>(markers);
   const [selectedMarker, setSelectedMarker] = useState<ExtendedMarker | null>(null);
   const lastSelectedMarkerRef = useRef<ExtendedMarker | null>(null);
   const lastMarkerCreationTimeRef = useRef<number | null>(null);
@@ -184,6 +186,63 @@ const Map: React.FC<MapProps> = ({ markerId }) => {
     fetchAndSetSavedMarkers();
   }, [session]);
 
+  // apply marker changes pushed by the server while the map is open
+  useEffect(() => {
+    if (!session) {
+      return;
+    }
+    let poller: ReturnType<typeof setInterval> | undefined;
+    const upsertMarker = (data: any) => {
+      const existing = markersRef.current.find((marker) => marker.id === data.id);
+      if (existing && existing === lastSelectedMarkerRef.current) {
+        return; // the open form already shows the user's own edits
+      }
+      existing?.remove();
+      const marker = createMarker(data);
+      removeDuplicates(marker);
+      setMarkers((prevMarkers) => [...prevMarkers.filter((m) => m !== existing), marker]);
+    };
+    const deleteMarker = (markerId: number) => {
+      const existing = markersRef.current.find((marker) => marker.id === markerId);
+      if (!existing || existing === lastSelectedMarkerRef.current) {
+        return;
+      }
+      existing.remove();
+      setMarkers((prevMarkers) => prevMarkers.filter((marker) => marker !== existing));
+    };
+    // Hosts that buffer streamed responses (such as App Engine standard) never deliver the "ready" event, so the
+    // map falls back to polling the changes endpoint.
+    const startPolling = () => {
+      clearTimeout(readyTimer);
+      events.close();
+      if (poller) {
+        return;
+      }
+      poller = setInterval(async () => {
+        const changes = await getMarkerChanges(session);
+        changes?.markers.forEach(upsertMarker);
+        changes?.removedMarkerIds.forEach(deleteMarker);
+      }, MARKER_POLL_INTERVAL_MS);
+    };
+    const events = new EventSource("/api/markers/events");
+    const readyTimer = setTimeout(startPolling, STREAM_READY_TIMEOUT_MS);
+    events.addEventListener("ready", () => clearTimeout(readyTimer));
+    events.addEventListener("created", (event: MessageEvent) => upsertMarker(JSON.parse(event.data).marker));
+    events.addEventListener("updated", (event: MessageEvent) => upsertMarker(JSON.parse(event.data).marker));
+    events.addEventListener("deleted", (event: MessageEvent) => deleteMarker(JSON.parse(event.data).markerId));
+    events.onerror = () => {
+      // the browser retries dropped streams by itself; a closed one was refused and is not retried
+      if (events.readyState === EventSource.CLOSED) {
+        startPolling();
+      }
+    };
+    return () => {
+      clearTimeout(readyTimer);
+      clearInterval(poller);
+      events.close();
+    };
+  }, [session]);
+
   // handle selection of marker
   useEffect(() => {
     if (!selectedMarker) {
@@ -208,6 +267,11 @@ const Map: React.FC<MapProps> = ({ markerId }) => {
     mouseOnMapRef.current = mouseOnMap;
   }, [mouseOnMap]);
 
+  // keep markersRef current for the server event handlers
+  useEffect(() => {
+    markersRef.current = markers;
+  }, [markers]);
+
   // save markers to local storage when not logged in
   useEffect(() => {
     if (userLoggedIn() || markers.length === 0 || status === "loading") {
@@ -8,13 +8,36 @@ import { SimpleMarker } from "@/app/globalInterfaces";
 import { FontAwesomeIcon } from "@fortawesome/react-fontawesome";
 import { faCircleNotch } from "@fortawesome/free-solid-svg-icons";
 import DrawerMenu from "@/app/components/global/DrawerMenu";
-import { getMarkers } from "@/app/services/globalServices";
-import { filterMarkers, haversineDistance } from "@/app/utils/galleryUtils";
+import { getMarkerPage, searchMarkers } from "@/app/services/globalServices";
+import { filterMarkers, haversineDistance, splitSearchQuery } from "@/app/utils/galleryUtils";
 import { fetchUserCoordinates } from "@/app/utils/globalUtils";
 import { LatLngTuple } from "leaflet";
 import SearchBar from "@/app/components/Gallery/SearchBar";
 import SortSelector from "@/app/components/Gallery/SortSelector";
 
+const MARKER_PAGE_SIZE = 40;
+const SEARCH_PAGE_SIZE = 100;
+const SEARCH_DEBOUNCE_MS = 250;
+
+function toSimpleMarker(marker: SimpleMarker): SimpleMarker {
+  return {
+    latitude: marker.latitude,
+    longitude: marker.longitude,
+    title: marker.title,
+    description: marker.description,
+    category: marker.category,
+    weatherInfo: marker.weatherInfo,
+    imageUrls: marker.images?.map((image: any) => image.mediumUrl || image.url),
+    user: marker.user,
+    id: marker.id,
+  } as SimpleMarker;
+}
+
+// The backend pages by date and title; the other orders sort the pages loaded so far.
+function pageOrder(sortMethod: string): { sort: string; direction: string } {
+  return sortMethod === "title" ? { sort: "title", direction: "asc" } : { sort: "date", direction: "desc" };
+}
+
 export default function Gallery() {
   const { data: session, status } = useSession();
   const [markers, setMarkers] = useState<SimpleMarker[]>([]);
@@ -22,38 +45,64 @@ export default function Gallery() {
   const [searchQuery, setSearchQuery] = useState("");
   const [userCoordinates, setUserCoordinates] = useState<LatLngTuple | null>(null);
   const [sortMethod, setSortMethod] = useState<string>("date");
+  const [searchResults, setSearchResults] = useState<SimpleMarker[] | null>(null);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
+  const { sort, direction } = pageOrder(sortMethod);
+
+  useEffect(() => {
+    let cancelled = false;
+    const fetchFirstPage = async () => {
+      setIsLoading(true);
+      const page = await getMarkerPage(session!, sort, direction, null, MARKER_PAGE_SIZE);
+      if (cancelled) {
+        return;
+      }
+      if (!page) {
+        console.error("Failed to fetch markers");
+      }
+      setMarkers(page ? page.markers.map(toSimpleMarker) : []);
+      setNextCursor(page?.nextCursor ?? null);
+      setIsLoading(false);
+    };
+    status === "authenticated" ? fetchFirstPage() : setIsLoading(false);
+    return () => {
+      cancelled = true;
+    };
+  }, [session, status, sort, direction]);
+
+  const loadMoreMarkers = async () => {
+    if (!nextCursor || isLoadingMore) {
+      return;
+    }
+    setIsLoadingMore(true);
+    const page = await getMarkerPage(session!, sort, direction, nextCursor, MARKER_PAGE_SIZE);
+    if (page) {
+      setMarkers((prevMarkers) => [...prevMarkers, ...page.markers.map(toSimpleMarker)]);
+      setNextCursor(page.nextCursor ?? null);
+    }
+    setIsLoadingMore(false);
+  };
 
   useEffect(() => {
-    const fetchMarkers = async () => {
-      try {
-        const data = await getMarkers(session!, 9000);
-        if (data === "No markers for this user") {
-          setMarkers([]);
-          return;
-        }
-        const simplifiedMarkers = data.map((marker: SimpleMarker) => ({
-          latitude: marker.latitude,
-          longitude: marker.longitude,
-          title: marker.title,
-          description: marker.description,
-          category: marker.category,
-          weatherInfo: marker.weatherInfo,
-          imageUrls: marker.images?.map((image: any) => image.url),
-          user: marker.user,
-          id: marker.id,
-        }));
-        simplifiedMarkers.sort(
-          (a: SimpleMarker, b: SimpleMarker) => b.weatherInfo.dt - a.weatherInfo.dt
-        );
-        setMarkers(simplifiedMarkers);
-      } catch (error) {
-        console.error("Failed to fetch markers:", error);
-      } finally {
-        setIsLoading(false);
+    if (!searchQuery.trim() || status !== "authenticated") {
+      setSearchResults(null);
+      return;
+    }
+    let cancelled = false;
+    const timer = setTimeout(async () => {
+      const { text, year } = splitSearchQuery(searchQuery);
+      const result = await searchMarkers(session!, text, year, 0, SEARCH_PAGE_SIZE);
+      if (!cancelled) {
+        // Fall back to filtering the loaded markers locally if the search request fails.
+        setSearchResults(result ? result.markers.map(toSimpleMarker) : null);
       }
+    }, SEARCH_DEBOUNCE_MS);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
     };
-    status === "authenticated" ? fetchMarkers() : setIsLoading(false);
-  }, [session, status]);
+  }, [searchQuery, session, status]);
 
   useEffect(() => {
     if (!userCoordinates) {
@@ -84,8 +133,9 @@ export default function Gallery() {
     [userCoordinates]
   );
 
-  const filteredMarkers = filterMarkers(markers, searchQuery);
-  const sortedMarkers = sortMarkers(filteredMarkers, sortMethod);
+  const filteredMarkers = searchResults ?? filterMarkers(markers, searchQuery);
+  const pagedInOrder = !searchResults && sortMethod !== "closestDistance" && sortMethod !== "coldest";
+  const sortedMarkers = pagedInOrder ? filteredMarkers : sortMarkers(filteredMarkers, sortMethod);
 
   return (
     <main className="relative min-h-screen">
@@ -130,6 +180,17 @@ export default function Gallery() {
           ))
         )}
       </div>
+      {!isLoading && nextCursor && !searchResults && (
+        <div className="relative flex justify-center pb-5">
+          <button
+            onClick={loadMoreMarkers}
+            disabled={isLoadingMore}
+            className="px-4 py-2 rounded bg-white dark:bg-black text-black dark:text-slate-300 text-xl"
+          >
+            {isLoadingMore ? <FontAwesomeIcon icon={faCircleNotch} spin /> : "Load more"}
+          </button>
+        </div>
+      )}
     </main>
   );
 }
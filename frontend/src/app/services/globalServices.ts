@@ -3,42 +3,6 @@
 import { BASE_API_URL } from "@/app/constants";
 import { Session } from "next-auth";
 
-export async function getMarkers(session: Session, timeout: number): Promise<any> {
-  const tokenValidityMessage = await validateSessionToken(session);
-  if (tokenValidityMessage.startsWith("Invalid")) {
-    throw new Error("Invalid session token");
-  }
-
-  const headers = new Headers({
-    Authorization: `Bearer ${session.idToken}`,
-    Accept: "application/json",
-  });
-
-  const fetchPromise = fetch(`${BASE_API_URL}/markers/user`, {
-    headers,
-  }).then(async (response) => {
-    if (!response.ok) {
-      throw new Error((await response.text()) || response.statusText);
-    }
-    return response.json();
-  });
-
-  const timeoutPromise = new Promise((_, reject) =>
-    setTimeout(() => reject(new Error(`Request timed out after ${timeout} seconds`)), timeout)
-  );
-
-  return Promise.race([fetchPromise, timeoutPromise])
-    .then((data) => {
-      return data;
-    })
-    .catch((error) => {
-      if (error.message.includes("No markers for this user")) {
-        return "No markers for this user";
-      }
-      return [];
-    });
-}
-
 export async function validateSessionToken(session: Session): Promise<string> {
   const fetchPromise = fetch(`${BASE_API_URL}/validateToken`, {
     method: "POST",
@@ -61,3 +25,53 @@ export async function validateSessionToken(session: Session): Promise<string> {
       return typeof result === "string" ? result : "Invalid token: Not string";
     });
 }
+
+export async function getMarkerPage(
+  session: Session,
+  sort: string,
+  direction: string,
+  cursor: string | null,
+  limit: number
+): Promise<any> {
+  const params = new URLSearchParams({ sort, direction, limit: String(limit) });
+  if (cursor) {
+    params.set("cursor", cursor);
+  }
+  try {
+    const response = await fetch(`${BASE_API_URL}/markers/user/page?${params}`, {
+      headers: {
+        Authorization: `Bearer ${session.idToken}`,
+        Accept: "application/json",
+      },
+    });
+    return response.ok ? await response.json() : null;
+  } catch (error) {
+    console.error("Error fetching marker page:", error);
+    return null;
+  }
+}
+
+export async function searchMarkers(
+  session: Session,
+  query: string,
+  year: string | null,
+  page: number,
+  size: number
+): Promise<any> {
+  const params = new URLSearchParams({ q: query, page: String(page), size: String(size) });
+  if (year) {
+    params.set("year", year);
+  }
+  try {
+    const response = await fetch(`${BASE_API_URL}/markers/search?${params}`, {
+      headers: {
+        Authorization: `Bearer ${session.idToken}`,
+        Accept: "application/json",
+      },
+    });
+    return response.ok ? await response.json() : null;
+  } catch (error) {
+    console.error("Error searching markers:", error);
+    return null;
+  }
+}
@@ -50,7 +50,8 @@ export async function postLocalMarker(session: Session, marker: SimpleMarker): P
     if (!response.ok) {
       throw new Error("Network response was not ok");
     }
-    return await response.json();
+    const created: PostResponse = await response.json();
+    return created.id;
   } catch (error) {
     console.error("Error posting marker:", error);
     return 0;
@@ -120,35 +121,36 @@ export async function postNewMarker(
   partialMarker: any,
   session: Session
 ): Promise<Partial<PostResponse> | boolean> {
-  partialMarker.weatherInfo = await constructWeatherInfo(partialMarker.latitude, partialMarker.longitude);
-  const marker: Partial<PostResponse> = {};
   if (!session) {
-    marker.id = 0;
-  } else {
-    try {
-      const response = await fetch(`${BASE_API_URL}/markers/user`, {
-        method: "POST",
-        headers: {
-          "Content-Type": "application/json",
-          Authorization: `Bearer ${session.idToken}`,
-        },
-        body: JSON.stringify(partialMarker),
-      });
-      if (!response.ok) {
-        console.error("Network response was not ok (postNewMarker)" + response.status);
-        return false;
-      }
-      marker.id = await response.json();
-    } catch (error) {
-      console.error("Error posting marker:", error);
+    const weatherInfo = await constructWeatherInfo(partialMarker.latitude, partialMarker.longitude);
+    return { ...partialMarker, id: 0, weatherInfo };
+  }
+  // The backend fills in the weather and location of the new marker and returns it.
+  try {
+    const response = await fetch(`${BASE_API_URL}/markers/user`, {
+      method: "POST",
+      headers: {
+        "Content-Type": "application/json",
+        Authorization: `Bearer ${session.idToken}`,
+      },
+      body: JSON.stringify(partialMarker),
+    });
+    if (!response.ok) {
+      console.error("Network response was not ok (postNewMarker)" + response.status);
       return false;
     }
+    const created: PostResponse = await response.json();
+    return {
+      id: created.id,
+      latitude: created.latitude,
+      longitude: created.longitude,
+      title: created.title,
+      weatherInfo: created.weatherInfo,
+    };
+  } catch (error) {
+    console.error("Error posting marker:", error);
+    return false;
   }
-  marker.latitude = partialMarker.latitude;
-  marker.longitude = partialMarker.longitude;
-  marker.title = partialMarker.title;
-  marker.weatherInfo = partialMarker.weatherInfo;
-  return marker;
 }
 
 export async function deleteMarker(session: Session, markerId: number): Promise<boolean> {
@@ -166,10 +168,10 @@ export async function deleteMarker(session: Session, markerId: number): Promise<
   }
 }
 
-export async function deleteImage(session: Session, imageUrl: string): Promise<boolean> {
+export async function deleteImage(session: Session, imageUrl: string, markerId: number): Promise<boolean> {
   try {
     const encodedImageUrl = encodeURIComponent(imageUrl);
-    const response = await fetch(`${BASE_API_URL}/markers/images?imageUrl=${encodedImageUrl}`, {
+    const response = await fetch(`${BASE_API_URL}/markers/images?imageUrl=${encodedImageUrl}&markerId=${markerId}`, {
       method: "DELETE",
       headers: {
         Authorization: `Bearer ${session.idToken}`,
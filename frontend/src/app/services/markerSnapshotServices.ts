@@ -0,0 +1,142 @@
+import { Session } from "next-auth";
+
+interface MarkerSnapshot {
+  version: string;
+  markers: any[];
+}
+
+export interface MarkerChangeSet {
+  markers: any[];
+  removedMarkerIds: number[];
+}
+
+const SNAPSHOT_KEY_PREFIX = "markerSnapshot:";
+const NO_MARKERS = "No markers for this user";
+const POLL_TIMEOUT_MS = 10000;
+
+// The last list is kept in the browser and brought up to date with the changes since its version, so it is not
+// downloaded again and the server keeps nothing per user.
+export async function getMarkers(session: Session, timeout: number): Promise<any> {
+  const controller = new AbortController();
+  const timer = setTimeout(() => controller.abort(), timeout);
+  try {
+    const markers = await fetchMarkers(session.user?.email ?? undefined, controller.signal);
+    return markers.length === 0 ? NO_MARKERS : markers;
+  } catch (error) {
+    return [];
+  } finally {
+    clearTimeout(timer);
+  }
+}
+
+async function fetchMarkers(email: string | undefined, signal: AbortSignal): Promise<any[]> {
+  const snapshot = email ? loadSnapshot(email) : null;
+  if (email && snapshot) {
+    const response = await fetch(`/api/markers/changes?since=${encodeURIComponent(snapshot.version)}`, {
+      cache: "no-store",
+      signal,
+    });
+    if (response.ok) {
+      const changes = await response.json();
+      if (!changes.reset) {
+        return applyChanges(email, snapshot, changes);
+      }
+    }
+  }
+
+  const headers = new Headers();
+  if (snapshot) {
+    headers.set("If-None-Match", `"${snapshot.version}"`);
+  }
+  const response = await fetch("/api/markers/user", { headers, cache: "no-store", signal });
+  if (response.status === 304 && snapshot) {
+    return snapshot.markers;
+  }
+  if (!response.ok) {
+    if (email) {
+      removeSnapshot(email);
+    }
+    // The list endpoint answers 404 when the feed is empty.
+    if (response.status === 404) {
+      return [];
+    }
+    throw new Error((await response.text()) || response.statusText);
+  }
+  const markers = await response.json();
+  const eTag = response.headers.get("ETag");
+  if (email && eTag) {
+    saveSnapshot(email, { version: eTag.replace(/^W\//, "").replace(/"/g, ""), markers });
+  }
+  return markers;
+}
+
+// Where the event stream cannot be used, the map polls here instead. The snapshot is moved forward and only what
+// changed since it is returned; null means there is no snapshot to compare with yet.
+export async function getMarkerChanges(session: Session): Promise<MarkerChangeSet | null> {
+  const email = session.user?.email;
+  const snapshot = email ? loadSnapshot(email) : null;
+  if (!email || !snapshot) {
+    return null;
+  }
+  try {
+    const signal = AbortSignal.timeout(POLL_TIMEOUT_MS);
+    const response = await fetch(`/api/markers/changes?since=${encodeURIComponent(snapshot.version)}`, {
+      cache: "no-store",
+      signal,
+    });
+    if (!response.ok) {
+      return null;
+    }
+    const changes = await response.json();
+    if (!changes.reset) {
+      applyChanges(email, snapshot, changes);
+      return { markers: changes.markers, removedMarkerIds: changes.removedMarkerIds };
+    }
+    // The changes since the snapshot are no longer known, so compare it with the full list.
+    removeSnapshot(email);
+    const markers = await fetchMarkers(email, signal);
+    const current = new Set<number>(markers.map((marker: any) => marker.id));
+    return {
+      markers,
+      removedMarkerIds: snapshot.markers.map((marker) => marker.id).filter((id) => !current.has(id)),
+    };
+  } catch (error) {
+    return null;
+  }
+}
+
+function applyChanges(email: string, snapshot: MarkerSnapshot, changes: any): any[] {
+  const replaced = new Set<number>([
+    ...changes.removedMarkerIds,
+    ...changes.markers.map((marker: any) => marker.id),
+  ]);
+  const markers = snapshot.markers.filter((marker) => !replaced.has(marker.id)).concat(changes.markers);
+  saveSnapshot(email, { version: String(changes.version), markers });
+  return markers;
+}
+
+function loadSnapshot(email: string): MarkerSnapshot | null {
+  try {
+    const stored = window.localStorage.getItem(SNAPSHOT_KEY_PREFIX + email);
+    return stored ? (JSON.parse(stored) as MarkerSnapshot) : null;
+  } catch (error) {
+    return null;
+  }
+}
+
+function saveSnapshot(email: string, snapshot: MarkerSnapshot) {
+  try {
+    window.localStorage.setItem(SNAPSHOT_KEY_PREFIX + email, JSON.stringify(snapshot));
+  } catch (error) {
+    // Over the storage quota; the next load downloads the full list again.
+    removeSnapshot(email);
+  }
+}
+
+function removeSnapshot(email: string) {
+  try {
+    window.localStorage.removeItem(SNAPSHOT_KEY_PREFIX + email);
+  } catch (error) {
+    // Storage is unavailable, so there is nothing to remove.
+  }
+}
@@ -18,6 +18,11 @@ function extractYear(query: string): string | null {
   return yearMatch ? yearMatch[0] : null;
 }
 
+export function splitSearchQuery(searchQuery: string): { text: string; year: string | null } {
+  const year = extractYear(searchQuery);
+  return { text: year ? searchQuery.replace(year, "").trim() : searchQuery.trim(), year };
+}
+
 export function filterMarkers(markers: SimpleMarker[], searchQuery: string) {
   if (!searchQuery) return markers;
 
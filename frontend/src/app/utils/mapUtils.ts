@@ -277,7 +277,7 @@ export const updateImageUrls = async (
   const urlsToRemove = selectedMarker?.imageUrls.filter((url) => !imageUrls.includes(url));
   if (urlsToRemove && session) {
     for (const url of urlsToRemove) {
-      if (!(await deleteImage(session, url))) {
+      if (!(await deleteImage(session, url, selectedMarker!.id!))) {
         return false;
       }
     }